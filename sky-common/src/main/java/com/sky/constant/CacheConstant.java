@@ -0,0 +1,30 @@
+package com.sky.constant;
+
+/**
+ * 缓存相关常量
+ */
+public class CacheConstant {
+
+    /**
+     * 菜单缓存key前缀
+     */
+    public static final String DISH_KEY_PREFIX = "dish_";
+    public static final String SETMEAL_KEY_PREFIX = "setmeal_";
+    public static final String SETMEAL_DISH_KEY_PREFIX = "setmealDish_";
+    public static final String CATEGORY_KEY_PREFIX = "category_";
+
+    /**
+     * 菜单缓存失效广播频道
+     */
+    public static final String MENU_EVICT_CHANNEL = "menu_cache_evict";
+
+    /**
+     * 商品快照刷新广播频道
+     */
+    public static final String PRODUCT_REFRESH_CHANNEL = "product_snapshot_refresh";
+
+    /**
+     * 令牌注销广播频道
+     */
+    public static final String JWT_REVOKE_CHANNEL = "jwt_revoke";
+}
@@ -23,4 +23,15 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 已校验令牌缓存的最大条目数
+     */
+    private long cacheMaxSize = 10000;
+
+    /**
+     * 已注销令牌布隆过滤器的预计容量和误判率
+     */
+    private long revokedExpectedSize = 100000;
+    private double revokedFpp = 0.01;
+
 }
@@ -0,0 +1,47 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache.menu")
+@Data
+public class MenuCacheProperties {
+
+    /**
+     * 本地缓存最大条目数
+     */
+    private long localMaxSize = 1000;
+
+    /**
+     * 本地缓存过期时间(毫秒)
+     */
+    private long localTtl = 60000;
+
+    /**
+     * redis缓存过期时间(毫秒)
+     */
+    private long redisTtl = 3600000;
+
+    /**
+     * 空结果缓存过期时间(毫秒)
+     */
+    private long emptyTtl = 60000;
+
+    /**
+     * 缓存未命中时是否使用redis分布式锁，保证多个节点中只有一个回源数据库
+     */
+    private boolean redisLockEnabled = false;
+
+    /**
+     * redis锁过期时间(毫秒)
+     */
+    private long redisLockTtl = 3000;
+
+    /**
+     * 未拿到锁时等待其他节点写入缓存的最长时间(毫秒)
+     */
+    private long redisLockWait = 1000;
+
+}
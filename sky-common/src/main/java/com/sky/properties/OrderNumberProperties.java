@@ -0,0 +1,33 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-number")
+@Data
+public class OrderNumberProperties {
+
+    /**
+     * 机器id，取值0~1023，集群内每个节点必须不同，没有默认值，未配置时启动失败
+     */
+    private Long workerId;
+
+    /**
+     * 起始时间戳(毫秒)，默认2024-01-01 00:00:00
+     */
+    private long epoch = 1704038400000L;
+
+    /**
+     * 保存已使用的最大时间戳到redis的间隔(毫秒)
+     */
+    private long highWaterMarkInterval = 1000;
+
+    /**
+     * 每次保存时预留的时间(毫秒)，保存的值为当前时间加上该值，重启后从保存的值之后开始生成id，
+     * 需要大于保存间隔，留出定时任务延迟的余量
+     */
+    private long highWaterMarkLease = 10000;
+
+}
@@ -0,0 +1,32 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-timeout")
+@Data
+public class OrderTimeoutProperties {
+
+    /**
+     * 未支付订单超时时间(毫秒)
+     */
+    private long timeout = 900000;
+
+    /**
+     * 延时队列轮询间隔(毫秒)
+     */
+    private long pollInterval = 1000;
+
+    /**
+     * 每次取消的最大订单数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 取消失败的订单重新加入延时队列后，等待多久再次处理(毫秒)
+     */
+    private long retryDelay = 5000;
+
+}
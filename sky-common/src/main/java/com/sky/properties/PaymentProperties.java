@@ -0,0 +1,97 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.payment")
+@Data
+public class PaymentProperties {
+
+    /**
+     * 支付模式：mock=模拟支付，real=真实支付
+     */
+    private String mode = "mock";
+
+    private Mock mock = new Mock();
+
+    private Notify notify = new Notify();
+
+    /**
+     * 是否使用模拟支付
+     */
+    public boolean isMockMode() {
+        return "mock".equals(mode) && mock.isEnabled();
+    }
+
+    @Data
+    public static class Mock {
+
+        /**
+         * 是否启用模拟支付
+         */
+        private boolean enabled = true;
+
+        /**
+         * 自动支付延迟(毫秒)
+         */
+        private long autoDelay = 3000;
+
+        /**
+         * 执行自动支付回调的线程数
+         */
+        private int poolSize = 2;
+
+        /**
+         * 最多等待执行的自动支付回调数，超出后不再自动回调
+         */
+        private int maxPending = 10000;
+    }
+
+    @Data
+    public static class Notify {
+
+        /**
+         * 回调收件箱消费者名称，集群内每个节点必须不同，重启后保持不变以便重新处理未确认的消息
+         * 不配置时使用主机名和端口
+         */
+        private String consumer;
+
+        /**
+         * 每次处理的回调数
+         */
+        private int batchSize = 100;
+
+        /**
+         * 轮询间隔(毫秒)
+         */
+        private long pollInterval = 200;
+
+        /**
+         * 一条回调最多处理的次数，达到后转入死信stream
+         */
+        private int maxAttempts = 10;
+
+        /**
+         * 第一次处理失败后的重试延迟(毫秒)，之后每次失败翻倍
+         */
+        private long retryBackoff = 1000;
+
+        /**
+         * 最大重试延迟(毫秒)，需要小于claimIdleTime，否则等待重试的消息会被其他节点当作宕机节点的消息认领
+         */
+        private long maxRetryBackoff = 30000;
+
+        /**
+         * 其他消费者未确认的消息空闲超过该时间(毫秒)后由本节点认领，用于接管宕机节点的消息
+         */
+        private long claimIdleTime = 60000;
+
+        /**
+         * 认领空闲消息的间隔(毫秒)
+         */
+        private long claimInterval = 30000;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * 购物车存储方式：db=数据库，redis=redis哈希
+     */
+    private String storage = "db";
+
+    /**
+     * redis购物车过期时间(毫秒)
+     */
+    private long redisTtl = 604800000;
+
+    /**
+     * 是否定时把redis购物车快照到shopping_cart表
+     */
+    private boolean snapshotEnabled = false;
+
+    /**
+     * 快照间隔(毫秒)
+     */
+    private long snapshotInterval = 60000;
+
+    /**
+     * 每次快照处理的用户数
+     */
+    private int snapshotBatchSize = 100;
+
+}
@@ -0,0 +1,72 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 推送消息合并发布的等待时间(毫秒)，等待期间的消息通过一次redis发布广播到所有节点
+     */
+    private long pushBatchDelay = 5;
+
+    /**
+     * 一次发布最多合并的消息数
+     */
+    private int pushBatchSize = 500;
+
+    /**
+     * 收到广播后推送给本节点连接的线程数，同一用户的消息总是由同一个线程按顺序推送
+     */
+    private int pushDeliverThreads = 4;
+
+    /**
+     * 每个推送线程等待推送的消息数上限，超过后丢弃新消息，不阻塞redis订阅线程
+     */
+    private int pushDeliverQueueSize = 10000;
+
+    /**
+     * 每个连接发送队列的长度，队列满后丢弃新消息，防止慢客户端积压的消息无限增长
+     */
+    private int sendQueueSize = 64;
+
+    /**
+     * 服务端发送心跳ping帧的间隔(毫秒)
+     */
+    private long pingInterval = 30000;
+
+    /**
+     * 发送ping帧和关闭连接的超时时间(毫秒)，对端已失联时写操作最多阻塞这么久，超时后直接关闭连接
+     */
+    private long pingTimeout = 5000;
+
+    /**
+     * 发送ping帧和关闭连接的线程数
+     */
+    private int pingPoolSize = 4;
+
+    /**
+     * 连接空闲超时时间(毫秒)，超过该时间没有收到客户端任何消息的连接会被关闭
+     */
+    private long idleTimeout = 90000;
+
+    /**
+     * 每个用户离线消息最多保留的条数
+     */
+    private int outboxSize = 50;
+
+    /**
+     * 离线消息保留时间(毫秒)
+     */
+    private long outboxTtl = 86400000;
+
+    /**
+     * 来单提醒合并窗口(毫秒)，窗口内的新订单合并为一条消息推送给商家，0表示不合并
+     */
+    private long newOrderCoalesceWindow = 0;
+
+}
@@ -11,7 +11,9 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -19,14 +21,63 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
+ * 所有请求共用一个连接池，保持长连接，避免每次请求都重新建立TCP和TLS连接
  */
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
 
+    /**
+     * 连接池最大连接数
+     */
+    static final int MAX_TOTAL = 200;
+
+    /**
+     * 每个域名的最大连接数
+     */
+    static final int MAX_PER_ROUTE = 50;
+
+    /**
+     * 连接空闲超过该时间后关闭
+     */
+    static final int IDLE_TIMEOUT_MSEC = 30 * 1000;
+
+    /**
+     * 连接空闲超过该时间后，复用前先检查是否可用
+     */
+    static final int VALIDATE_AFTER_INACTIVITY_MSEC = 2 * 1000;
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER;
+
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    static {
+        CONNECTION_MANAGER = new PoolingHttpClientConnectionManager();
+        CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MSEC);
+
+        //后台线程定期关闭过期和空闲的连接
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(CONNECTION_MANAGER)
+                .setDefaultRequestConfig(builderRequestConfig())
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_TIMEOUT_MSEC, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 连接池状态：使用中、空闲、等待连接的请求数
+     * @return
+     */
+    public static PoolStats getPoolStats() {
+        return CONNECTION_MANAGER.getTotalStats();
+    }
+
     /**
      * 发送GET方式请求
      * @param url
@@ -34,8 +85,8 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        // 使用共享的Httpclient对象
+        CloseableHttpClient httpClient = HTTP_CLIENT;
 
         String result = "";
         CloseableHttpResponse response = null;
@@ -55,16 +106,20 @@ public class HttpClientUtil {
             //发送请求
             response = httpClient.execute(httpGet);
 
-            //判断响应状态
+            //判断响应状态，非200时也要读完响应体，连接才能复用
             if(response.getStatusLine().getStatusCode() == 200){
                 result = EntityUtils.toString(response.getEntity(),"UTF-8");
+            } else {
+                EntityUtils.consume(response.getEntity());
             }
         }catch (Exception e){
             e.printStackTrace();
         }finally {
+            //关闭响应，连接归还到连接池
             try {
-                response.close();
-                httpClient.close();
+                if (response != null) {
+                    response.close();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -81,8 +136,8 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        // 使用共享的Httpclient对象
+        CloseableHttpClient httpClient = HTTP_CLIENT;
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -110,8 +165,11 @@ public class HttpClientUtil {
         } catch (Exception e) {
             throw e;
         } finally {
+            //关闭响应，连接归还到连接池
             try {
-                response.close();
+                if (response != null) {
+                    response.close();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -128,8 +186,8 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        // 使用共享的Httpclient对象
+        CloseableHttpClient httpClient = HTTP_CLIENT;
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -160,8 +218,11 @@ public class HttpClientUtil {
         } catch (Exception e) {
             throw e;
         } finally {
+            //关闭响应，连接归还到连接池
             try {
-                response.close();
+                if (response != null) {
+                    response.close();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -2,13 +2,25 @@ package com.sky.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtUtil {
+
+    /**
+     * 每个秘钥对应的签名key和解析器，创建后复用
+     */
+    private static final Map<String, Key> SIGNING_KEYS = new ConcurrentHashMap<>();
+    private static final Map<String, JwtParser> PARSERS = new ConcurrentHashMap<>();
+
     /**
      * 生成jwt
      * 使用Hs256算法, 私匙使用固定秘钥
@@ -31,7 +43,7 @@ public class JwtUtil {
                 // 如果有私有声明，一定要先设置这个自己创建的私有的声明，这个是给builder的claim赋值，一旦写在标准的声明赋值之后，就是覆盖了那些标准的声明的
                 .setClaims(claims)
                 // 设置签名使用的签名算法和签名使用的秘钥
-                .signWith(signatureAlgorithm, secretKey.getBytes(StandardCharsets.UTF_8))
+                .signWith(signatureAlgorithm, signingKey(secretKey))
                 // 设置过期时间
                 .setExpiration(exp);
 
@@ -46,13 +58,18 @@ public class JwtUtil {
      * @return
      */
     public static Claims parseJWT(String secretKey, String token) {
-        // 得到DefaultJwtParser
-        Claims claims = Jwts.parser()
-                // 设置签名的秘钥
-                .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
-                // 设置需要解析的jwt
+        // 复用该秘钥的解析器，解析需要的jwt
+        Claims claims = PARSERS.computeIfAbsent(secretKey, k -> Jwts.parser().setSigningKey(signingKey(k)))
                 .parseClaimsJws(token).getBody();
         return claims;
     }
 
+    /**
+     * 获取秘钥对应的HS256签名key
+     */
+    private static Key signingKey(String secretKey) {
+        return SIGNING_KEYS.computeIfAbsent(secretKey,
+                k -> new SecretKeySpec(k.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName()));
+    }
+
 }
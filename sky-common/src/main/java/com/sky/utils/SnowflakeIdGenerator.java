@@ -0,0 +1,75 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器
+ * 41位时间戳 + 10位机器id + 12位序列号，不同机器id的节点生成的id不会重复
+ * 时间戳和序列号打包在一个AtomicLong中通过CAS更新，热点路径上无锁
+ */
+public class SnowflakeIdGenerator {
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+
+    private final long workerId;
+    private final long epoch;
+
+    /**
+     * 高位为相对epoch的时间戳，低12位为序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param workerId 机器id，取值0~1023，集群内每个节点必须不同
+     * @param epoch    起始时间戳(毫秒)
+     */
+    public SnowflakeIdGenerator(long workerId, long epoch) {
+        this(workerId, epoch, 0);
+    }
+
+    /**
+     * @param workerId      机器id，取值0~1023，集群内每个节点必须不同
+     * @param epoch         起始时间戳(毫秒)
+     * @param highWaterMark 上次运行时已使用的最大时间戳(毫秒)，生成的id的时间戳都大于它，
+     *                      重启后时钟回拨也不会生成重复的id
+     */
+    public SnowflakeIdGenerator(long workerId, long epoch, long highWaterMark) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0~" + MAX_WORKER_ID + "之间");
+        }
+        this.workerId = workerId;
+        this.epoch = epoch;
+        if (highWaterMark >= epoch) {
+            state.set((highWaterMark - epoch + 1) << SEQUENCE_BITS);
+        }
+    }
+
+    /**
+     * 已使用的最大时间戳(毫秒)
+     * @return
+     */
+    public long getLastTimestamp() {
+        return (state.get() >>> SEQUENCE_BITS) + epoch;
+    }
+
+    /**
+     * 生成下一个id
+     * 同一毫秒内序列号用完或时钟回拨时，沿用上一个时间戳继续递增，保证id单调且不阻塞等待
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long prev = state.get();
+            long now = System.currentTimeMillis() - epoch;
+            long next = now > (prev >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : prev + 1;
+            if (state.compareAndSet(prev, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+                return (timestamp << (WORKER_ID_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+}
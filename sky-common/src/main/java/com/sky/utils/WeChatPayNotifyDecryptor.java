@@ -0,0 +1,118 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.sky.properties.WeChatProperties;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * 微信支付回调通知解密工具类
+ * 密钥只创建一次，每个线程复用自己的Cipher，回调报文和解密后的数据各只解析一次
+ */
+@Component
+public class WeChatPayNotifyDecryptor {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BIT = 128;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Autowired
+    private WeChatProperties weChatProperties;
+
+    private volatile SecretKeySpec secretKey;
+
+    /**
+     * 解密支付成功回调通知
+     *
+     * @param body 回调请求体
+     * @return 解密后的支付结果
+     * @throws GeneralSecurityException
+     */
+    public Transaction decryptTransaction(String body) throws GeneralSecurityException {
+        Notification notification = JSON.parseObject(body, Notification.class);
+        return JSON.parseObject(decrypt(notification.getResource()), Transaction.class);
+    }
+
+    /**
+     * 解密通知中的加密数据
+     *
+     * @param resource
+     * @return 明文
+     * @throws GeneralSecurityException
+     */
+    public byte[] decrypt(Resource resource) throws GeneralSecurityException {
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey(),
+                new GCMParameterSpec(TAG_LENGTH_BIT, resource.getNonce().getBytes(StandardCharsets.UTF_8)));
+        if (resource.getAssociatedData() != null) {
+            cipher.updateAAD(resource.getAssociatedData().getBytes(StandardCharsets.UTF_8));
+        }
+        return cipher.doFinal(Base64.getDecoder().decode(resource.getCiphertext()));
+    }
+
+    private SecretKeySpec secretKey() {
+        SecretKeySpec key = secretKey;
+        if (key == null) {
+            key = new SecretKeySpec(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8), "AES");
+            secretKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * 回调通知报文
+     */
+    @Data
+    public static class Notification {
+        private String id;
+        @JSONField(name = "event_type")
+        private String eventType;
+        @JSONField(name = "resource_type")
+        private String resourceType;
+        private Resource resource;
+    }
+
+    /**
+     * 通知中的加密数据
+     */
+    @Data
+    public static class Resource {
+        private String algorithm;
+        private String ciphertext;
+        @JSONField(name = "associated_data")
+        private String associatedData;
+        private String nonce;
+    }
+
+    /**
+     * 解密后的支付结果
+     */
+    @Data
+    public static class Transaction {
+        //商户平台订单号
+        @JSONField(name = "out_trade_no")
+        private String outTradeNo;
+        //微信支付交易号
+        @JSONField(name = "transaction_id")
+        private String transactionId;
+        //交易状态
+        @JSONField(name = "trade_state")
+        private String tradeState;
+    }
+}
@@ -12,8 +12,13 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 自定义切面类，统一为公共字段赋值
@@ -28,14 +33,17 @@ public class AutoFillAspect {
     @Pointcut("execution(* com.sky.mapper.*.*(..)) && @annotation(com.sky.annotation.AutoFill)")
     public void autoFillPointCut() {}
 
+    /**
+     * 实体类 -> 公共字段的set方法，每个实体类只解析一次
+     */
+    private final Map<Class<?>, Setters> settersCache = new ConcurrentHashMap<>();
+
     /**
      * 通知 自动填充公共字段
      * @param joinPoint
      */
     @Before("autoFillPointCut()")
     public void autoFill(JoinPoint joinPoint) {
-        log.info("公共字段自动填充...");
-
         //获得方法签名对象
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         //获得方法上的注解
@@ -46,47 +54,98 @@ public class AutoFillAspect {
         //获取当前目标方法的参数
         Object[] args = joinPoint.getArgs();
 
-        if (args == null || args.length == 0) {
+        if (args == null || args.length == 0 || args[0] == null) {
             return;
         }
 
-        //实体对象
-        Object entity = args[0];
-
         //准备赋值的数据
         LocalDateTime time = LocalDateTime.now();
         Long empId = BaseContext.getCurrentId();
-        if (operationType == OperationType.INSERT) {
-            //当前执行的是insert操作，为4个字段赋值
-            try {
-                //获得set方法对象----Method
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-                //通过反射调用目标对象的方法
-                setCreateTime.invoke(entity, time);
-                setUpdateTime.invoke(entity, time);
-                setCreateUser.invoke(entity, empId);
-                setUpdateUser.invoke(entity, empId);
-            } catch (Exception ex) {
-                log.error("公共字段自动填充失败：{}", ex.getMessage());
+        log.debug("公共字段自动填充，操作类型：{}，操作人：{}", operationType, empId);
+
+        //实体对象，批量插入时为实体集合
+        if (args[0] instanceof Collection) {
+            for (Object entity : (Collection<?>) args[0]) {
+                fill(entity, operationType, time, empId);
             }
-        }else {
-            //当前执行的是update操作，为2个字段赋值
-            try {
-                //获得set方法对象----Method
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-                //通过反射调用目标对象的方法
-                setUpdateTime.invoke(entity, time);
-                setUpdateUser.invoke(entity, empId);
-            } catch (Exception ex) {
-                log.error("公共字段自动填充失败：{}", ex.getMessage());
+        } else {
+            fill(args[0], operationType, time, empId);
+        }
+    }
+
+    private void fill(Object entity, OperationType operationType, LocalDateTime time, Long empId) {
+        if (entity == null) {
+            return;
+        }
+        Setters setters = settersCache.computeIfAbsent(entity.getClass(), Setters::new);
+        try {
+            if (operationType == OperationType.INSERT) {
+                //当前执行的是insert操作，为4个字段赋值
+                setters.setCreateTime(entity, time);
+                setters.setCreateUser(entity, empId);
             }
+            //insert、update操作都为2个字段赋值
+            setters.setUpdateTime(entity, time);
+            setters.setUpdateUser(entity, empId);
+        } catch (Throwable ex) {
+            log.error("公共字段自动填充失败：{}", ex.getMessage());
         }
+    }
 
+    /**
+     * 实体类公共字段的set方法
+     * 解析为MethodHandle后缓存，调用时不再查找方法；实体类没有的字段跳过
+     */
+    private static class Setters {
 
+        private final MethodHandle setCreateTime;
+        private final MethodHandle setUpdateTime;
+        private final MethodHandle setCreateUser;
+        private final MethodHandle setUpdateUser;
 
+        Setters(Class<?> entityClass) {
+            this.setCreateTime = find(entityClass, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            this.setUpdateTime = find(entityClass, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            this.setCreateUser = find(entityClass, AutoFillConstant.SET_CREATE_USER, Long.class);
+            this.setUpdateUser = find(entityClass, AutoFillConstant.SET_UPDATE_USER, Long.class);
+        }
+
+        void setCreateTime(Object entity, LocalDateTime time) throws Throwable {
+            if (setCreateTime != null) {
+                setCreateTime.invokeExact(entity, (Object) time);
+            }
+        }
+
+        void setUpdateTime(Object entity, LocalDateTime time) throws Throwable {
+            if (setUpdateTime != null) {
+                setUpdateTime.invokeExact(entity, (Object) time);
+            }
+        }
+
+        void setCreateUser(Object entity, Long empId) throws Throwable {
+            if (setCreateUser != null) {
+                setCreateUser.invokeExact(entity, (Object) empId);
+            }
+        }
+
+        void setUpdateUser(Object entity, Long empId) throws Throwable {
+            if (setUpdateUser != null) {
+                setUpdateUser.invokeExact(entity, (Object) empId);
+            }
+        }
+
+        /**
+         * 查找set方法，并统一为(Object, Object)void类型，便于invokeExact调用
+         */
+        private static MethodHandle find(Class<?> entityClass, String name, Class<?> fieldType) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(entityClass, name, MethodType.methodType(void.class, fieldType))
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                log.error("公共字段自动填充：{}没有{}方法", entityClass.getSimpleName(), name);
+                return null;
+            }
+        }
     }
 }
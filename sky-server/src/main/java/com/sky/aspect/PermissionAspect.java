@@ -1,5 +1,6 @@
 package com.sky.aspect;
 
+import com.sky.annotation.RequirePermission;
 import com.sky.result.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -8,15 +9,22 @@ import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -29,11 +37,16 @@ public class PermissionAspect {
     private HttpServletRequest request; // 自动注入请求对象
 
     // 权限列表（可从数据库/缓存获取）
-    private static final List<String> ALLOWED_PATHS = Arrays.asList(
+    private static final Set<String> ALLOWED_PATHS = new HashSet<>(Arrays.asList(
             "/ts/search",
             "/other/allowed/path",
             "/admin/employee/{id}"
-    );
+    ));
+
+    /**
+     * 接口方法 -> 是否允许访问，启动时按所有接口预先计算，请求时只查一次表
+     */
+    private final Map<Method, Boolean> decisions = new ConcurrentHashMap<>();
 
     @Pointcut("execution(* com.sky.controller..*.*(..))&& @annotation(com.sky.annotation.RequirePermission))")
     public void permissionPointcut() {
@@ -41,28 +54,54 @@ public class PermissionAspect {
 
     @Around("permissionPointcut()")
     public Object checkPermission(ProceedingJoinPoint joinPoint) throws Throwable {
-        // 1. 获取完整请求路径
-        String fullPath = buildFullPath(joinPoint);
-
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
 
-        // 2. 权限校验逻辑
-        if (!ALLOWED_PATHS.contains(fullPath)) {
-            System.out.println("权限不足，禁止访问1111");
+        // 权限校验逻辑，启动后新增的接口方法在第一次访问时计算
+        Boolean allowed = decisions.get(method);
+        if (allowed == null) {
+            allowed = decisions.computeIfAbsent(method, this::decide);
+        }
+        if (!allowed) {
+            log.warn("权限不足，禁止访问：{}", method);
             return Result.error("权限不足，禁止访问");
         }
 
-        // 3. 放行请求
+        // 放行请求
         return joinPoint.proceed();
     }
 
+    /**
+     * 启动完成后为所有需要权限校验的接口方法计算访问权限
+     * @param event
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex(ApplicationReadyEvent event) {
+        RequestMappingHandlerMapping handlerMapping = event.getApplicationContext()
+                .getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        for (HandlerMethod handlerMethod : handlerMapping.getHandlerMethods().values()) {
+            Method method = handlerMethod.getMethod();
+            if (method.isAnnotationPresent(RequirePermission.class)) {
+                decisions.computeIfAbsent(method, this::decide);
+            }
+        }
+        log.info("接口权限表构建完成，接口数：{}", decisions.size());
+    }
+
+    /**
+     * 按接口的完整请求路径判断是否允许访问
+     */
+    private Boolean decide(Method method) {
+        return ALLOWED_PATHS.contains(buildFullPath(method));
+    }
+
     /**
      * 构建完整请求路径
      */
-    private String buildFullPath(ProceedingJoinPoint joinPoint) {
+    private String buildFullPath(Method method) {
         // 获取类路径
-        String classPath = getClassPath(joinPoint);
+        String classPath = getClassPath(method);
         // 获取方法路径
-        String methodPath = getMethodPath(joinPoint);
+        String methodPath = getMethodPath(method);
         // 路径拼接标准化
         return normalizePath(classPath, methodPath);
 
@@ -72,8 +111,8 @@ public class PermissionAspect {
     /**
      * 获取类级别路径
      */
-    private String getClassPath(ProceedingJoinPoint joinPoint) {
-        RequestMapping classMapping = joinPoint.getTarget().getClass()
+    private String getClassPath(Method method) {
+        RequestMapping classMapping = method.getDeclaringClass()
                 .getAnnotation(RequestMapping.class);
         if (classMapping != null && classMapping.value().length > 0) {
             return classMapping.value()[0].replaceAll("/+$", "");
@@ -84,9 +123,7 @@ public class PermissionAspect {
     /**
      * 获取方法级别路径（兼容多种注解）
      */
-    private String getMethodPath(ProceedingJoinPoint joinPoint) {
-        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
-
+    private String getMethodPath(Method method) {
         // 优先级：GetMapping/PostMapping > RequestMapping
         GetMapping getMapping = method.getAnnotation(GetMapping.class);
         if (getMapping != null && getMapping.value().length > 0) {
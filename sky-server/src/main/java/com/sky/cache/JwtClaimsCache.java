@@ -0,0 +1,80 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验令牌缓存
+ * 令牌校验通过后缓存解析出的claims，缓存在令牌自身的过期时间失效，避免每次请求重新计算签名
+ */
+@Component
+public class JwtClaimsCache {
+
+    private final JwtProperties jwtProperties;
+
+    /**
+     * 每个秘钥一个缓存，同一个令牌在不同秘钥下的校验结果互不影响
+     */
+    private final Map<String, Cache<String, Claims>> caches = new ConcurrentHashMap<>();
+
+    public JwtClaimsCache(JwtProperties jwtProperties) {
+        this.jwtProperties = jwtProperties;
+    }
+
+    /**
+     * 校验并解析令牌，优先从缓存获取
+     * @param secretKey jwt秘钥
+     * @param token 令牌
+     * @return
+     */
+    public Claims parse(String secretKey, String token) {
+        Cache<String, Claims> cache = caches.computeIfAbsent(secretKey, k -> newCache());
+        Claims claims = cache.getIfPresent(token);
+        if (claims == null) {
+            //校验失败时抛出异常，不会写入缓存
+            claims = JwtUtil.parseJWT(secretKey, token);
+            cache.put(token, claims);
+        }
+        return claims;
+    }
+
+    /**
+     * 移除缓存的令牌
+     * @param token
+     */
+    public void invalidate(String token) {
+        caches.values().forEach(cache -> cache.invalidate(token));
+    }
+
+    private Cache<String, Claims> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheMaxSize())
+                .expireAfter(new Expiry<String, Claims>() {
+                    public long expireAfterCreate(String key, Claims value, long currentTime) {
+                        //在令牌的过期时间失效，没有过期时间的令牌不缓存
+                        Date exp = value.getExpiration();
+                        long ttl = exp == null ? 0 : exp.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(ttl, 0));
+                    }
+
+                    public long expireAfterUpdate(String key, Claims value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    public long expireAfterRead(String key, Claims value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,164 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已注销令牌列表
+ * 注销的令牌保存在redis中直到令牌过期，本地布隆过滤器在前，未注销的令牌不需要访问redis
+ * 注销消息通过redis发布订阅同步到所有节点的布隆过滤器，断线重连后和定时按redis中的数据重建
+ */
+@Component
+@Slf4j
+public class JwtRevocationList implements MessageListener, SubscriptionListener {
+
+    private static final String REVOKED_KEY_PREFIX = "jwt_revoked:";
+
+    /**
+     * 所有已注销令牌的索引，分值为令牌过期时间，用于重建布隆过滤器
+     */
+    private static final String REVOKED_INDEX_KEY = "jwt_revoked_index";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
+
+    private final JwtProperties jwtProperties;
+
+    private volatile BloomFilter filter;
+
+    /**
+     * 正在重建的布隆过滤器，重建期间收到的注销消息同时写入
+     */
+    private volatile BloomFilter building;
+
+    /**
+     * 是否已完成首次重建
+     */
+    private volatile boolean built;
+
+    public JwtRevocationList(JwtProperties jwtProperties) {
+        this.jwtProperties = jwtProperties;
+        this.filter = newFilter();
+    }
+
+    /**
+     * 注销令牌，令牌过期前都会被拒绝
+     * @param token 令牌
+     * @param expiration 令牌过期时间
+     */
+    public void revoke(String token, Date expiration) {
+        String id = tokenId(token);
+        long ttl = expiration.getTime() - System.currentTimeMillis();
+        if (ttl > 0) {
+            stringRedisTemplate.opsForValue().set(REVOKED_KEY_PREFIX + id, "1", ttl, TimeUnit.MILLISECONDS);
+            stringRedisTemplate.opsForZSet().add(REVOKED_INDEX_KEY, id, expiration.getTime());
+            stringRedisTemplate.convertAndSend(CacheConstant.JWT_REVOKE_CHANNEL, id);
+        }
+        add(id);
+        jwtClaimsCache.invalidate(token);
+    }
+
+    /**
+     * 判断令牌是否已注销
+     * 布隆过滤器判断不存在时直接返回，可能存在时再查询redis，redis不可用时按已注销处理
+     * @param token
+     * @return
+     */
+    public boolean isRevoked(String token) {
+        String id = tokenId(token);
+        if (!filter.mightContain(id)) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(REVOKED_KEY_PREFIX + id));
+        } catch (Exception e) {
+            log.warn("查询已注销令牌失败，拒绝访问", e);
+            return true;
+        }
+    }
+
+    /**
+     * 收到其他节点的注销消息，加入布隆过滤器
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        add(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 订阅注销频道成功，断线重连后会再次调用
+     * 断线期间其他节点的注销消息已经丢失，需要立即重建
+     * @param channel
+     * @param count
+     */
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (built) {
+            log.info("已注销令牌频道重新订阅，重建布隆过滤器");
+            rebuild();
+        }
+    }
+
+    /**
+     * 按redis中未过期的已注销令牌重建布隆过滤器，清除已过期的令牌
+     * 注销消息丢失且未能在重连时重建的，本节点最多在一个重建间隔(10分钟)内放行已注销的令牌
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelay = 600000, initialDelay = 600000)
+    public void rebuild() {
+        try {
+            BloomFilter newFilter = newFilter();
+            building = newFilter;
+            stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_INDEX_KEY, 0, System.currentTimeMillis());
+            Set<String> ids = stringRedisTemplate.opsForZSet().range(REVOKED_INDEX_KEY, 0, -1);
+            if (ids != null) {
+                ids.forEach(newFilter::put);
+            }
+            filter = newFilter;
+            built = true;
+            log.info("已注销令牌布隆过滤器重建完成，令牌数：{}", ids == null ? 0 : ids.size());
+        } catch (Exception e) {
+            log.error("已注销令牌布隆过滤器重建失败", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    private void add(String id) {
+        filter.put(id);
+        BloomFilter newFilter = building;
+        if (newFilter != null) {
+            newFilter.put(id);
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(jwtProperties.getRevokedExpectedSize(), jwtProperties.getRevokedFpp());
+    }
+
+    /**
+     * 令牌的签名部分，唯一标识一个令牌
+     */
+    private static String tokenId(String token) {
+        return token.substring(token.lastIndexOf('.') + 1);
+    }
+}
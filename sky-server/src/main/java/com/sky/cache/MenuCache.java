@@ -0,0 +1,285 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.constant.CacheConstant;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 菜单二级缓存
+ * 本地Caffeine缓存在前，redis缓存在后，失效消息通过redis发布订阅广播到所有节点
+ */
+@Component
+@Slf4j
+public class MenuCache implements MessageListener {
+
+    @Autowired
+    @Qualifier("menuCacheRedisTemplate")
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    private final Cache<String, Object> localCache;
+
+    /**
+     * 正在回源的key，用于合并同一key的并发加载
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<List<?>>> loadingMap = new ConcurrentHashMap<>();
+
+    private static final String LOCK_KEY_PREFIX = "lock:";
+
+    private static final long LOCK_RETRY_INTERVAL = 50;
+
+    /**
+     * 按前缀清理缓存时，每次SCAN和删除的键数
+     */
+    private static final int SCAN_COUNT = 500;
+
+    /**
+     * 只释放自己持有的锁
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    public MenuCache(MenuCacheProperties menuCacheProperties) {
+        this.menuCacheProperties = menuCacheProperties;
+        //空结果使用较短的过期时间
+        long localTtl = menuCacheProperties.getLocalTtl();
+        long emptyTtl = Math.min(menuCacheProperties.getEmptyTtl(), localTtl);
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getLocalMaxSize())
+                .expireAfter(new Expiry<String, Object>() {
+                    public long expireAfterCreate(String key, Object value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(((List<?>) value).isEmpty() ? emptyTtl : localTtl);
+                    }
+
+                    public long expireAfterUpdate(String key, Object value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    public long expireAfterRead(String key, Object value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 查询缓存，依次查本地缓存、redis，都未命中时调用loader加载并写回两级缓存
+     * 同一节点上同一key同时只有一个线程回源，其余线程等待并共享它的结果
+     * @param key
+     * @param loader
+     * @return
+     */
+    public <T> List<T> get(String key, Supplier<List<T>> loader) {
+        //查询本地缓存
+        List<T> list = (List<T>) localCache.getIfPresent(key);
+        if (list != null) {
+            return list;
+        }
+
+        CompletableFuture<List<?>> future = new CompletableFuture<>();
+        CompletableFuture<List<?>> loading = loadingMap.putIfAbsent(key, future);
+        if (loading != null) {
+            //已有线程在加载该key，等待其结果
+            try {
+                return (List<T>) loading.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            //再次查询本地缓存，上一个加载线程可能刚刚完成
+            list = (List<T>) localCache.getIfPresent(key);
+            if (list == null) {
+                list = load(key, loader);
+            }
+            future.complete(list);
+            return list;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingMap.remove(key, future);
+        }
+    }
+
+    /**
+     * 查询redis，未命中时回源数据库并写回两级缓存
+     * 开启分布式锁时，多个节点中只有拿到锁的节点回源，其余节点短暂等待redis中的结果
+     */
+    private <T> List<T> load(String key, Supplier<List<T>> loader) {
+        //查询redis缓存，空列表同样视为命中，防止缓存穿透
+        List<T> list = readRedis(key);
+        if (list != null) {
+            localCache.put(key, list);
+            return list;
+        }
+
+        if (!menuCacheProperties.isRedisLockEnabled()) {
+            return loadFromDb(key, loader);
+        }
+
+        String lockKey = LOCK_KEY_PREFIX + key;
+        String lockValue = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockValue,
+                menuCacheProperties.getRedisLockTtl(), TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                return loadFromDb(key, loader);
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), lockValue);
+            }
+        }
+
+        //其他节点正在回源，等待其写入redis，超时后自行回源
+        long deadline = System.currentTimeMillis() + menuCacheProperties.getRedisLockWait();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LOCK_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            list = readRedis(key);
+            if (list != null) {
+                localCache.put(key, list);
+                return list;
+            }
+        }
+        return loadFromDb(key, loader);
+    }
+
+    /**
+     * 查询数据库并写回两级缓存，空结果按较短的过期时间缓存
+     */
+    private <T> List<T> loadFromDb(String key, Supplier<List<T>> loader) {
+        List<T> list = loader.get();
+        if (list == null) {
+            list = new ArrayList<>();
+        }
+        long ttl = list.isEmpty() ? menuCacheProperties.getEmptyTtl() : menuCacheProperties.getRedisTtl();
+        redisTemplate.opsForValue().set(key, list, ttl, TimeUnit.MILLISECONDS);
+        localCache.put(key, list);
+        return list;
+    }
+
+    /**
+     * 读取redis缓存，无法反序列化的旧格式数据视为未命中
+     */
+    private <T> List<T> readRedis(String key) {
+        try {
+            return (List<T>) redisTemplate.opsForValue().get(key);
+        } catch (SerializationException e) {
+            log.warn("菜单缓存反序列化失败，重新加载：{}", key);
+            return null;
+        }
+    }
+
+    /**
+     * 清理指定key的缓存，并通知其他节点
+     * @param key
+     */
+    public void evict(String key) {
+        log.info("清理菜单缓存：{}", key);
+        redisTemplate.delete(key);
+        localCache.invalidate(key);
+        stringRedisTemplate.convertAndSend(CacheConstant.MENU_EVICT_CHANNEL, key);
+    }
+
+    /**
+     * 在当前事务提交后清理缓存，没有事务时立即清理
+     * 避免事务提交前其他请求把旧数据重新载入缓存
+     * @param keys
+     */
+    public void evictAfterCommit(Collection<String> keys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keys.forEach(MenuCache.this::evict);
+                }
+            });
+        } else {
+            keys.forEach(this::evict);
+        }
+    }
+
+    /**
+     * 清理指定前缀的缓存，并通知其他节点
+     * 使用SCAN分批查找，不像KEYS一样长时间阻塞redis
+     * @param prefix
+     */
+    public void evictByPrefix(String prefix) {
+        log.info("清理菜单缓存：{}*", prefix);
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_COUNT).build();
+        List<String> keys = new ArrayList<>(SCAN_COUNT);
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() >= SCAN_COUNT) {
+                    stringRedisTemplate.unlink(keys);
+                    keys.clear();
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            stringRedisTemplate.unlink(keys);
+        }
+        invalidateLocalByPrefix(prefix);
+        stringRedisTemplate.convertAndSend(CacheConstant.MENU_EVICT_CHANNEL, prefix + "*");
+    }
+
+    /**
+     * 收到失效广播，清理本地缓存
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (key.endsWith("*")) {
+            invalidateLocalByPrefix(key.substring(0, key.length() - 1));
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    private void invalidateLocalByPrefix(String prefix) {
+        localCache.asMap().keySet().removeIf(k -> k.startsWith(prefix));
+    }
+}
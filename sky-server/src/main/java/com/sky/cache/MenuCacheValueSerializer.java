@@ -0,0 +1,97 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 菜单缓存value的序列化器
+ * 菜单缓存的值都是同一类型元素的列表，只在开头记录一次元素类型，元素按普通json序列化，
+ * 不像每个对象都带类型信息的GenericJackson2JsonRedisSerializer那样随列表长度膨胀
+ * 格式：{"type":"com.sky.vo.DishVO","data":[...]}，空列表没有type
+ */
+public class MenuCacheValueSerializer implements RedisSerializer<List<?>> {
+
+    private static final String TYPE = "type";
+    private static final String DATA = "data";
+
+    /**
+     * 只反序列化本项目的类型
+     */
+    private static final String TYPE_PACKAGE = "com.sky.";
+
+    private final ObjectMapper objectMapper;
+
+    public MenuCacheValueSerializer() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public byte[] serialize(List<?> list) throws SerializationException {
+        if (list == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            if (!list.isEmpty()) {
+                generator.writeStringField(TYPE, list.get(0).getClass().getName());
+            }
+            generator.writeFieldName(DATA);
+            objectMapper.writeValue(generator, list);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new SerializationException("菜单缓存序列化失败", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 按序列化时的字段顺序读取：先type，再data
+     */
+    @Override
+    public List<?> deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME) {
+                throw new SerializationException("不是菜单缓存格式的数据");
+            }
+            Class<?> elementType = Object.class;
+            if (TYPE.equals(parser.getCurrentName())) {
+                String type = parser.nextTextValue();
+                if (type == null || !type.startsWith(TYPE_PACKAGE)) {
+                    throw new SerializationException("不支持的菜单缓存类型：" + type);
+                }
+                elementType = ClassUtils.forName(type, getClass().getClassLoader());
+                parser.nextToken();
+            }
+            if (!DATA.equals(parser.getCurrentName()) || parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new SerializationException("不是菜单缓存格式的数据");
+            }
+            CollectionType listType = objectMapper.getTypeFactory().constructCollectionType(ArrayList.class, elementType);
+            return objectMapper.readValue(parser, listType);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("菜单缓存反序列化失败", e);
+        }
+    }
+}
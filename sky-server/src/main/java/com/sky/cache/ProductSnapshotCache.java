@@ -0,0 +1,248 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 商品快照缓存
+ * 在内存中保存菜品、套餐的名称、图片、价格、状态，供购物车、下单计价、套餐菜品查询使用
+ * 启动时全量加载，后台修改商品后通过redis发布订阅通知所有节点按id增量刷新
+ * 发布订阅的消息可能丢失，因此定时全量重新加载，订阅断线重连后也立即全量重新加载
+ */
+@Component
+@Slf4j
+public class ProductSnapshotCache implements MessageListener, SubscriptionListener {
+
+    private static final String DISH = "dish:";
+    private static final String SETMEAL = "setmeal:";
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<Long, ProductSnapshot> dishSnapshots = new ConcurrentHashMap<>();
+    private final Map<Long, ProductSnapshot> setmealSnapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 是否已完成启动时的全量加载
+     */
+    private volatile boolean loaded;
+
+    /**
+     * 启动完成后全量加载商品快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        Map<Long, ProductSnapshot> dishes = new HashMap<>();
+        dishMapper.list(new Dish()).forEach(dish -> dishes.put(dish.getId(), of(dish)));
+        Map<Long, ProductSnapshot> setmeals = new HashMap<>();
+        setmealMapper.list(new Setmeal()).forEach(setmeal -> setmeals.put(setmeal.getId(), of(setmeal)));
+
+        //已删除的商品从快照中移除
+        replace(dishSnapshots, dishes);
+        replace(setmealSnapshots, setmeals);
+        loaded = true;
+        log.info("商品快照加载完成，菜品{}个，套餐{}个", dishSnapshots.size(), setmealSnapshots.size());
+    }
+
+    /**
+     * 定时全量重新加载，修正因刷新通知丢失而过期的快照
+     */
+    @Scheduled(fixedDelayString = "${sky.product-snapshot.reload-interval:300000}",
+            initialDelayString = "${sky.product-snapshot.reload-interval:300000}")
+    public void reloadAll() {
+        try {
+            loadAll();
+        } catch (Exception e) {
+            log.error("商品快照重新加载失败", e);
+        }
+    }
+
+    /**
+     * 订阅刷新频道成功，断线重连后会再次调用
+     * 断线期间的刷新通知已经丢失，需要全量重新加载
+     * @param channel
+     * @param count
+     */
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (loaded) {
+            log.info("商品快照刷新频道重新订阅，全量重新加载");
+            reloadAll();
+        }
+    }
+
+    /**
+     * 查询菜品快照，未加载时查询数据库
+     * @param dishId
+     * @return
+     */
+    public ProductSnapshot getDish(Long dishId) {
+        ProductSnapshot snapshot = dishSnapshots.get(dishId);
+        return snapshot != null ? snapshot : reloadDish(dishId);
+    }
+
+    /**
+     * 查询套餐快照，未加载时查询数据库
+     * @param setmealId
+     * @return
+     */
+    public ProductSnapshot getSetmeal(Long setmealId) {
+        ProductSnapshot snapshot = setmealSnapshots.get(setmealId);
+        return snapshot != null ? snapshot : reloadSetmeal(setmealId);
+    }
+
+    /**
+     * 事务提交后通知所有节点刷新菜品快照
+     * @param dishIds
+     */
+    public void refreshDishesAfterCommit(Collection<Long> dishIds) {
+        afterCommit(() -> dishIds.forEach(id -> publish(DISH + id)));
+    }
+
+    /**
+     * 事务提交后通知所有节点刷新套餐快照
+     * @param setmealIds
+     */
+    public void refreshSetmealsAfterCommit(Collection<Long> setmealIds) {
+        afterCommit(() -> setmealIds.forEach(id -> publish(SETMEAL + id)));
+    }
+
+    /**
+     * 收到刷新通知，按id重新加载
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(DISH)) {
+            reloadDish(Long.valueOf(body.substring(DISH.length())));
+        } else if (body.startsWith(SETMEAL)) {
+            reloadSetmeal(Long.valueOf(body.substring(SETMEAL.length())));
+        }
+    }
+
+    private ProductSnapshot reloadDish(Long dishId) {
+        Dish dish = dishMapper.getById(dishId);
+        if (dish == null) {
+            dishSnapshots.remove(dishId);
+            return null;
+        }
+        ProductSnapshot snapshot = of(dish);
+        dishSnapshots.put(dishId, snapshot);
+        return snapshot;
+    }
+
+    private ProductSnapshot reloadSetmeal(Long setmealId) {
+        Setmeal setmeal = setmealMapper.getSetmealById(setmealId);
+        if (setmeal == null) {
+            setmealSnapshots.remove(setmealId);
+            return null;
+        }
+        ProductSnapshot snapshot = of(setmeal);
+        setmealSnapshots.put(setmealId, snapshot);
+        return snapshot;
+    }
+
+    private static void replace(Map<Long, ProductSnapshot> snapshots, Map<Long, ProductSnapshot> latest) {
+        snapshots.putAll(latest);
+        snapshots.keySet().retainAll(latest.keySet());
+    }
+
+    private void publish(String message) {
+        stringRedisTemplate.convertAndSend(CacheConstant.PRODUCT_REFRESH_CHANNEL, message);
+    }
+
+    private void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+
+    private static ProductSnapshot of(Dish dish) {
+        return ProductSnapshot.builder()
+                .id(dish.getId())
+                .name(dish.getName())
+                .image(dish.getImage())
+                .description(dish.getDescription())
+                .price(dish.getPrice())
+                .status(dish.getStatus())
+                .build();
+    }
+
+    private static ProductSnapshot of(Setmeal setmeal) {
+        return ProductSnapshot.builder()
+                .id(setmeal.getId())
+                .name(setmeal.getName())
+                .image(setmeal.getImage())
+                .description(setmeal.getDescription())
+                .price(setmeal.getPrice())
+                .status(setmeal.getStatus())
+                .build();
+    }
+
+    /**
+     * 商品快照
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProductSnapshot {
+        private Long id;
+        //名称
+        private String name;
+        //图片
+        private String image;
+        //描述信息
+        private String description;
+        //价格
+        private BigDecimal price;
+        //0 停售 1 起售
+        private Integer status;
+
+        /**
+         * 是否起售中，不存在的商品由调用方按null判断
+         */
+        public boolean onSale() {
+            return StatusConstant.ENABLE.equals(status) && price != null;
+        }
+    }
+}
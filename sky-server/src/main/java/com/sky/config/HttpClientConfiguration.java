@@ -0,0 +1,37 @@
+package com.sky.config;
+
+import com.sky.utils.HttpClientUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    /**
+     * 注册HttpClientUtil连接池的监控指标
+     *
+     * @return
+     */
+    @Bean
+    public MeterBinder httpClientPoolMetrics() {
+        log.info("注册Http连接池监控指标");
+        return registry -> {
+            //使用中的连接数
+            Gauge.builder("sky.http.pool.connections", () -> HttpClientUtil.getPoolStats().getLeased())
+                    .tag("state", "leased")
+                    .register(registry);
+            //空闲的连接数
+            Gauge.builder("sky.http.pool.connections", () -> HttpClientUtil.getPoolStats().getAvailable())
+                    .tag("state", "available")
+                    .register(registry);
+            //等待连接的请求数
+            Gauge.builder("sky.http.pool.pending", () -> HttpClientUtil.getPoolStats().getPending())
+                    .register(registry);
+        };
+    }
+
+}
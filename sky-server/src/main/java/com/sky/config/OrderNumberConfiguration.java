@@ -0,0 +1,39 @@
+package com.sky.config;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.task.OrderNumberTask;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Configuration
+@Slf4j
+public class OrderNumberConfiguration {
+
+    /**
+     * 创建订单号生成器，可自行声明同类型的bean替换
+     * 机器id没有默认值，未配置时启动失败，避免多个节点共用同一个机器id生成重复订单号
+     * 从redis读取上次运行时保存的最大时间戳，重启后从它之后开始生成
+     *
+     * @param orderNumberProperties
+     * @param stringRedisTemplate
+     * @return
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public SnowflakeIdGenerator snowflakeIdGenerator(OrderNumberProperties orderNumberProperties,
+                                                     StringRedisTemplate stringRedisTemplate) {
+        Long workerId = orderNumberProperties.getWorkerId();
+        if (workerId == null) {
+            throw new IllegalStateException("未配置订单号生成器机器id(sky.order-number.worker-id)，集群内每个节点必须配置不同的值");
+        }
+        String value = stringRedisTemplate.opsForValue().get(OrderNumberTask.HIGH_WATER_MARK_KEY + workerId);
+        long highWaterMark = value == null ? 0 : Long.parseLong(value);
+        log.info("开始创建订单号生成器，机器id：{}，已使用的最大时间戳：{}", workerId, highWaterMark);
+        return new SnowflakeIdGenerator(workerId, orderNumberProperties.getEpoch(), highWaterMark);
+    }
+
+}
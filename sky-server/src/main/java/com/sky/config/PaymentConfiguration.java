@@ -0,0 +1,41 @@
+package com.sky.config;
+
+import com.sky.properties.PaymentProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+@Configuration
+@Slf4j
+public class PaymentConfiguration {
+
+    /**
+     * 创建模拟支付回调调度线程池
+     * 回调任务按延迟时间调度执行，等待期间不占用线程
+     *
+     * @param paymentProperties
+     * @param meterRegistry
+     * @return
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledThreadPoolExecutor mockPaymentScheduler(PaymentProperties paymentProperties,
+                                                            MeterRegistry meterRegistry) {
+        log.info("开始创建模拟支付回调线程池，线程数：{}", paymentProperties.getMock().getPoolSize());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mock-pay-");
+        threadFactory.setDaemon(true);
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(paymentProperties.getMock().getPoolSize(), threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+
+        //等待执行的回调数
+        Gauge.builder("sky.payment.mock.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        return executor;
+    }
+
+}
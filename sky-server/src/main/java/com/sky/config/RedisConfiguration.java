@@ -1,11 +1,23 @@
 package com.sky.config;
 
+import com.sky.cache.JwtRevocationList;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuCacheValueSerializer;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.CacheConstant;
+import com.sky.websocket.WebSocketPushBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @Slf4j
@@ -21,4 +33,69 @@ public class RedisConfiguration {
         redisTemplate.setKeySerializer(new StringRedisSerializer());
         return redisTemplate;
     }
+
+    // 创建菜单缓存使用的redis模板对象，value使用json序列化，每个列表只记录一次元素类型，编解码比jdk序列化快
+    @Bean
+    public RedisTemplate menuCacheRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+        log.info("开始创建菜单缓存redis模板对象");
+        RedisTemplate redisTemplate = new RedisTemplate();
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new MenuCacheValueSerializer());
+        return redisTemplate;
+    }
+
+    // 创建redis消息监听线程池，不设置时监听容器每收到一条消息都会创建一个新线程
+    // 不注册为bean，避免替换spring boot默认的applicationTaskExecutor
+    // 队列满时丢弃消息并记录日志，不在订阅线程上执行，避免阻塞所有频道的接收；这些频道都有定时全量刷新兜底
+    private ThreadPoolTaskExecutor redisListenerExecutor(MeterRegistry meterRegistry) {
+        log.info("开始创建redis消息监听线程池");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("redis-listener-");
+        executor.setDaemon(true);
+        executor.setRejectedExecutionHandler((r, e) -> {
+            log.error("redis消息监听线程池已满，丢弃消息");
+            meterRegistry.counter("sky.redis.listener.rejected").increment();
+        });
+        executor.initialize();
+
+        // 线程数、活跃线程数、排队消息数等指标
+        ExecutorServiceMetrics.monitor(meterRegistry, executor.getThreadPoolExecutor(), "sky.redis.listener");
+        return executor;
+    }
+
+    // 创建redis消息监听容器，订阅缓存失效广播
+    // WebSocket推送广播需要保持顺序，使用单独的容器
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       MeterRegistry meterRegistry,
+                                                                       MenuCache menuCache,
+                                                                       ProductSnapshotCache productSnapshotCache,
+                                                                       WebSocketPushBus webSocketPushBus,
+                                                                       JwtRevocationList jwtRevocationList) {
+        log.info("开始创建redis消息监听容器");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.setTaskExecutor(redisListenerExecutor(meterRegistry));
+        container.addMessageListener(menuCache, new ChannelTopic(CacheConstant.MENU_EVICT_CHANNEL));
+        container.addMessageListener(productSnapshotCache, new ChannelTopic(CacheConstant.PRODUCT_REFRESH_CHANNEL));
+        container.addMessageListener(jwtRevocationList, new ChannelTopic(CacheConstant.JWT_REVOKE_CHANNEL));
+        return container;
+    }
+
+    // 创建WebSocket推送广播的监听容器，消息在订阅线程上按到达顺序交给推送总线
+    // 推送总线只解析消息并放入各推送线程的队列，不会阻塞订阅线程
+    @Bean
+    public RedisMessageListenerContainer webSocketPushListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                        WebSocketPushBus webSocketPushBus) {
+        log.info("开始创建WebSocket推送监听容器");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.setTaskExecutor(new SyncTaskExecutor());
+        container.addMessageListener(webSocketPushBus, new ChannelTopic(WebSocketPushBus.CHANNEL));
+        return container;
+    }
 }
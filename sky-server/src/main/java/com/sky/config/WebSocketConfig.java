@@ -1,5 +1,7 @@
 package com.sky.config;
 
+import com.sky.interceptor.WebSocketHandshakeFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.server.standard.ServerEndpointExporter;
@@ -19,4 +21,17 @@ public class WebSocketConfig {
     public ServerEndpointExporter serverEndpointExporter() {
         return new ServerEndpointExporter();
     }
+
+    /**
+     * 注册WebSocket握手校验过滤器，校验不通过时不会建立连接
+     * @param webSocketHandshakeFilter
+     * @return
+     */
+    @Bean
+    public FilterRegistrationBean<WebSocketHandshakeFilter> webSocketHandshakeFilterRegistration(
+            WebSocketHandshakeFilter webSocketHandshakeFilter) {
+        FilterRegistrationBean<WebSocketHandshakeFilter> registration = new FilterRegistrationBean<>(webSocketHandshakeFilter);
+        registration.addUrlPatterns(WebSocketHandshakeFilter.USER_PATH + "*", WebSocketHandshakeFilter.ADMIN_PATH + "*");
+        return registration;
+    }
 }
@@ -14,7 +14,6 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -105,6 +104,20 @@ public class DishController {
         return Result.success();
     }
 
+    /**
+     * 菜品起售、停售
+     * @param status
+     * @param id
+     * @return
+     */
+    @PostMapping("/status/{status}")
+    @ApiOperation("菜品起售停售")
+    public Result<String> startOrStop(@PathVariable("status") Integer status, Long id){
+        log.info("菜品起售停售：{},{}", status, id);
+        dishService.startOrStop(status, id);
+        return Result.success();
+    }
+
 
     /**
      * 条件查询
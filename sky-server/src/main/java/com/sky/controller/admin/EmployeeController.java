@@ -1,6 +1,8 @@
 package com.sky.controller.admin;
 
 import com.sky.annotation.RequirePermission;
+import com.sky.cache.JwtClaimsCache;
+import com.sky.cache.JwtRevocationList;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.dto.EmployeeDTO;
 import com.sky.dto.EmployeeLoginDTO;
@@ -13,12 +15,14 @@ import com.sky.result.Result;
 import com.sky.service.EmployeeService;
 import com.sky.utils.JwtUtil;
 import com.sky.vo.EmployeeLoginVO;
+import io.jsonwebtoken.Claims;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,6 +39,10 @@ public class EmployeeController {
     private EmployeeService employeeService;
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
+    @Autowired
+    private JwtRevocationList jwtRevocationList;
 
     /**
      * 登录
@@ -69,12 +77,17 @@ public class EmployeeController {
 
     /**
      * 退出
+     * 注销当前令牌，令牌过期前不能再使用
      *
+     * @param request
      * @return
      */
     @PostMapping("/logout")
     @ApiOperation("员工退出")
-    public Result<String> logout() {
+    public Result<String> logout(HttpServletRequest request) {
+        String token = request.getHeader(jwtProperties.getAdminTokenName());
+        Claims claims = jwtClaimsCache.parse(jwtProperties.getAdminSecretKey(), token);
+        jwtRevocationList.revoke(token, claims.getExpiration());
         return Result.success();
     }
 
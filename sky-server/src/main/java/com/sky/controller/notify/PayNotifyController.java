@@ -1,19 +1,16 @@
 package com.sky.controller.notify;
 
 import com.alibaba.druid.support.json.JSONUtils;
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
-import com.sky.properties.WeChatProperties;
-import com.sky.service.OrderService;
-import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import com.sky.task.PayNotifyInbox;
+import com.sky.utils.WeChatPayNotifyDecryptor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
@@ -25,12 +22,13 @@ import java.util.HashMap;
 @Slf4j
 public class PayNotifyController {
     @Autowired
-    private OrderService orderService;
+    private PayNotifyInbox payNotifyInbox;
     @Autowired
-    private WeChatProperties weChatProperties;
+    private WeChatPayNotifyDecryptor weChatPayNotifyDecryptor;
 
     /**
      * 支付成功回调
+     * 解密后写入支付回调收件箱即响应微信，订单状态修改、来单提醒由PayNotifyTask异步处理
      *
      * @param request
      */
@@ -38,21 +36,16 @@ public class PayNotifyController {
     public void paySuccessNotify(HttpServletRequest request, HttpServletResponse response) throws Exception {
         //读取数据
         String body = readData(request);
-        log.info("支付成功回调：{}", body);
+        log.debug("支付成功回调：{}", body);
 
         //数据解密
-        String plainText = decryptData(body);
-        log.info("解密后的文本：{}", plainText);
+        WeChatPayNotifyDecryptor.Transaction transaction = weChatPayNotifyDecryptor.decryptTransaction(body);
+        String outTradeNo = transaction.getOutTradeNo();//商户平台订单号
+        String transactionId = transaction.getTransactionId();//微信支付交易号
 
-        JSONObject jsonObject = JSON.parseObject(plainText);
-        String outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
-        String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
-
-        log.info("商户平台订单号：{}", outTradeNo);
-        log.info("微信支付交易号：{}", transactionId);
-
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+        //写入收件箱，写入失败时抛出异常，微信会重新回调
+        payNotifyInbox.append(outTradeNo, transactionId);
+        log.info("支付成功回调已入队，商户平台订单号：{}，微信支付交易号：{}", outTradeNo, transactionId);
 
         //给微信响应
         responseToWeixin(response);
@@ -66,39 +59,7 @@ public class PayNotifyController {
      * @throws Exception
      */
     private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
-            }
-            result.append(line);
-        }
-        return result.toString();
-    }
-
-    /**
-     * 数据解密
-     *
-     * @param body
-     * @return
-     * @throws Exception
-     */
-    private String decryptData(String body) throws Exception {
-        JSONObject resultObject = JSON.parseObject(body);
-        JSONObject resource = resultObject.getJSONObject("resource");
-        String ciphertext = resource.getString("ciphertext");
-        String nonce = resource.getString("nonce");
-        String associatedData = resource.getString("associated_data");
-
-        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
-        //密文解密
-        String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
-                nonce.getBytes(StandardCharsets.UTF_8),
-                ciphertext);
-
-        return plainText;
+        return new String(StreamUtils.copyToByteArray(request.getInputStream()), StandardCharsets.UTF_8);
     }
 
     /**
@@ -1,5 +1,7 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
+import com.sky.constant.CacheConstant;
 import com.sky.entity.Category;
 import com.sky.result.Result;
 import com.sky.service.CategoryService;
@@ -18,6 +20,8 @@ public class CategoryController {
 
     @Autowired
     private CategoryService categoryService;
+    @Autowired
+    private MenuCache menuCache;
 
     /**
      * 查询分类
@@ -27,7 +31,8 @@ public class CategoryController {
     @GetMapping("/list")
     @ApiOperation("查询分类")
     public Result<List<Category>> list(Integer type) {
-        List<Category> list = categoryService.list(type);
+        List<Category> list = menuCache.get(CacheConstant.CATEGORY_KEY_PREFIX + type,
+                () -> categoryService.list(type));
         return Result.success(list);
     }
 }
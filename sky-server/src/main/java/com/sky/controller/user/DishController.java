@@ -1,5 +1,7 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
@@ -9,8 +11,6 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,7 +24,7 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private MenuCache menuCache;
 
     /**
      * 根据分类id查询菜品
@@ -36,26 +36,15 @@ public class DishController {
     @ApiOperation("根据分类id查询菜品")
     public Result<List<DishVO>> list(Long categoryId) {
 
-        //构造redis缓存key，规则为：dish_分类id
-        String key = "dish_" + categoryId;
-
-        //查询redis中是否有缓存数据
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-
-        //存在缓存数据，直接返回给前端
-        if(list != null && list.size() > 0){
-            return Result.success(list);
-        }
+        //构造缓存key，规则为：dish_分类id
+        String key = CacheConstant.DISH_KEY_PREFIX + categoryId;
 
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-       list= dishService.listWithFlavor(dish);
-
-        //将查询到的数据载入缓存
-        redisTemplate.opsForValue().set(key, list);
-
+        //依次查询本地缓存、redis，未命中时查询数据库并载入缓存
+        List<DishVO> list = menuCache.get(key, () -> dishService.listWithFlavor(dish));
 
         return Result.success(list);
     }
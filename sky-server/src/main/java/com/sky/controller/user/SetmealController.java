@@ -1,5 +1,7 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
@@ -20,6 +22,8 @@ import java.util.List;
 public class SetmealController {
     @Autowired
     private SetmealService setmealService;
+    @Autowired
+    private MenuCache menuCache;
 
     /**
      * 条件查询
@@ -34,7 +38,8 @@ public class SetmealController {
         setmeal.setCategoryId(categoryId);
         setmeal.setStatus(StatusConstant.ENABLE);
 
-        List<Setmeal> list = setmealService.list(setmeal);
+        List<Setmeal> list = menuCache.get(CacheConstant.SETMEAL_KEY_PREFIX + categoryId,
+                () -> setmealService.list(setmeal));
         return Result.success(list);
     }
 
@@ -47,7 +52,8 @@ public class SetmealController {
     @GetMapping("/dish/{id}")
     @ApiOperation("根据套餐id查询包含的菜品列表")
     public Result<List<DishItemVO>> dishList(@PathVariable("id") Long id) {
-        List<DishItemVO> list = setmealService.getDishItemById(id);
+        List<DishItemVO> list = menuCache.get(CacheConstant.SETMEAL_DISH_KEY_PREFIX + id,
+                () -> setmealService.getDishItemById(id));
         return Result.success(list);
     }
 }
@@ -1,9 +1,10 @@
 package com.sky.interceptor;
 
+import com.sky.cache.JwtClaimsCache;
+import com.sky.cache.JwtRevocationList;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
 import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,10 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
+    @Autowired
+    private JwtRevocationList jwtRevocationList;
 
     /**
      * 校验jwt
@@ -43,12 +48,15 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
         //1、从请求头中获取令牌
         String token = request.getHeader(jwtProperties.getUserTokenName());
 
-        //2、校验令牌
+        //2、校验令牌，已注销的令牌不再使用
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
+            if (jwtRevocationList.isRevoked(token)) {
+                response.setStatus(401);
+                return false;
+            }
+            Claims claims = jwtClaimsCache.parse(jwtProperties.getUserSecretKey(), token);
             Long userId = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
-            log.info("当前员工id：", userId);
+            log.debug("当前用户id：{}", userId);
             BaseContext.setCurrentId(userId);
             //3、通过，放行
             return true;
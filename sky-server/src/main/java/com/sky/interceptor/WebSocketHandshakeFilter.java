@@ -0,0 +1,79 @@
+package com.sky.interceptor;
+
+import com.sky.cache.JwtClaimsCache;
+import com.sky.cache.JwtRevocationList;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * WebSocket握手校验jwt令牌
+ * 浏览器建立WebSocket连接时不能设置请求头，令牌可以放在请求头或token参数中
+ * 用户端连接路径中的用户id必须与令牌中的用户id一致，否则可以读取其他用户的离线消息
+ */
+@Component
+@Slf4j
+public class WebSocketHandshakeFilter extends OncePerRequestFilter {
+
+    public static final String USER_PATH = "/ws/order/";
+    public static final String ADMIN_PATH = "/ws/admin/";
+
+    private static final String TOKEN_PARAM = "token";
+
+    @Autowired
+    private JwtProperties jwtProperties;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
+    @Autowired
+    private JwtRevocationList jwtRevocationList;
+
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean user = path.startsWith(USER_PATH);
+
+        //1、从请求头或请求参数中获取令牌
+        String token = request.getHeader(user ? jwtProperties.getUserTokenName() : jwtProperties.getAdminTokenName());
+        if (!StringUtils.hasText(token)) {
+            token = request.getParameter(TOKEN_PARAM);
+        }
+
+        //2、校验令牌，已注销的令牌不再使用
+        Claims claims;
+        try {
+            if (jwtRevocationList.isRevoked(token)) {
+                response.setStatus(401);
+                return;
+            }
+            claims = jwtClaimsCache.parse(user ? jwtProperties.getUserSecretKey() : jwtProperties.getAdminSecretKey(), token);
+        } catch (Exception ex) {
+            response.setStatus(401);
+            return;
+        }
+
+        //3、用户端只能连接自己的推送通道
+        if (user) {
+            String pathUserId = path.substring(USER_PATH.length());
+            String userId = String.valueOf(claims.get(JwtClaimsConstant.USER_ID));
+            if (!userId.equals(pathUserId)) {
+                log.warn("【WebSocket】用户{}尝试连接用户{}的推送通道，已拒绝", userId, pathUserId);
+                response.setStatus(403);
+                return;
+            }
+        }
+
+        //4、通过，继续握手
+        chain.doFilter(request, response);
+    }
+}
@@ -6,6 +6,7 @@ import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -48,4 +49,68 @@ public interface OrderMapper {
     @Select("select * from orders where id = #{id}")
     Orders getById(Long id);
 
+    /**
+     * 批量取消指定状态的订单
+     * @param ids 订单ID
+     * @param fromStatus 取消前的订单状态，状态已变化的订单不会被取消
+     * @param toStatus 取消后的订单状态
+     * @param cancelReason 取消原因
+     * @param cancelTime 取消时间
+     * @return 实际取消的订单数
+     */
+    int cancelBatch(List<Long> ids, Integer fromStatus, Integer toStatus, String cancelReason, LocalDateTime cancelTime);
+
+    /**
+     * 根据订单ID查询指定状态的订单并加行锁，事务提交前其他事务不能修改这些订单
+     * @param ids 订单ID
+     * @param status 订单状态
+     * @return 订单列表
+     */
+    List<Orders> getByIdsAndStatusForUpdate(List<Long> ids, Integer status);
+
+    /**
+     * 支付成功，按订单号更新待付款且未支付订单的状态，已支付或已取消的订单不会被更新
+     * @param number 订单号
+     * @param fromStatus 更新前的订单状态，待付款
+     * @param status 订单状态
+     * @param payStatus 支付状态
+     * @param checkoutTime 结账时间
+     * @return 实际更新的订单数，为0说明订单不存在、已处理过或已取消
+     */
+    @Update("update orders set status = #{status}, pay_status = #{payStatus}, checkout_time = #{checkoutTime} " +
+            "where number = #{number} and status = #{fromStatus} and pay_status = 0")
+    int updatePaySuccess(String number, Integer fromStatus, Integer status, Integer payStatus, LocalDateTime checkoutTime);
+
+    /**
+     * 根据订单号查询指定状态的订单并加行锁
+     * @param numbers 订单号
+     * @param status 订单状态
+     * @return 订单列表
+     */
+    List<Orders> getByNumbersAndStatusForUpdate(List<String> numbers, Integer status);
+
+    /**
+     * 批量支付成功，只更新仍处于fromStatus且未支付的订单
+     * @param ids 订单ID
+     * @param fromStatus 更新前的订单状态，待付款
+     * @param status 订单状态
+     * @param payStatus 支付状态
+     * @param checkoutTime 结账时间
+     * @return 实际更新的订单数
+     */
+    int updatePaySuccessBatch(List<Long> ids, Integer fromStatus, Integer status, Integer payStatus,
+                              LocalDateTime checkoutTime);
+
+    /**
+     * 按订单号更新指定状态订单的支付状态
+     * @param number 订单号
+     * @param status 订单状态
+     * @param fromPayStatus 更新前的支付状态
+     * @param toPayStatus 更新后的支付状态
+     * @return 实际更新的订单数
+     */
+    @Update("update orders set pay_status = #{toPayStatus} " +
+            "where number = #{number} and status = #{status} and pay_status = #{fromPayStatus}")
+    int updatePayStatus(String number, Integer status, Integer fromPayStatus, Integer toPayStatus);
+
 }
@@ -25,4 +25,10 @@ public interface SetmealDishMapper {
     List<SetmealDish> getSetmealId(Long id);
 @Delete("delete from setmeal_dish where setmeal_id = #{id} ")
     void deleteBySetmealId(Long id);
+
+    /**
+     * 根据套餐id集合批量删除套餐菜品关系
+     * @param setmealIds
+     */
+    void deleteBySetmealIds(List<Long> setmealIds);
 }
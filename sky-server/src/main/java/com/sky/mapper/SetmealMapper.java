@@ -50,4 +50,17 @@ public interface SetmealMapper {
     List<DishItemVO> getDishItemBySetmealId(Long setmealId);
    @Select("select * from setmeal where id = #{setmealId} ")
     Setmeal getSetmealById(Long setmealId);
+
+    /**
+     * 根据套餐id集合查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> getByIds(List<Long> ids);
+
+    /**
+     * 根据套餐id集合批量删除套餐
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
 }
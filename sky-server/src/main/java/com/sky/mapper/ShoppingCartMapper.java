@@ -38,4 +38,25 @@ public interface ShoppingCartMapper {
     @Delete("delete from shopping_cart where user_id = #{userId}")
     void deleteByUserId(Long userId);
 
+    /**
+     * 删除已下单的购物车数据，只删除id和数量都与下单时读取的一致的记录
+     * @param userId 用户id
+     * @param items 下单时读取的购物车数据
+     * @return 实际删除的记录数
+     */
+    int deleteOrdered(Long userId, List<ShoppingCart> items);
+
+    /**
+     * 扣减已下单的数量，用于下单期间数量又被增加的记录，剩余的数量保留在购物车中
+     * @param userId 用户id
+     * @param items 下单时读取的购物车数据
+     */
+    void subtractOrdered(Long userId, List<ShoppingCart> items);
+
+    /**
+     * 批量插入购物车数据
+     * @param shoppingCartList
+     */
+    void insertBatch(List<ShoppingCart> shoppingCartList);
+
 }
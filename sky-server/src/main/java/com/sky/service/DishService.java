@@ -44,6 +44,13 @@ public interface DishService {
 
     List<Dish> getByTypeWithFlavor(Long categoryId);
 
+    /**
+     * 菜品起售、停售
+     * @param status
+     * @param id
+     */
+    void startOrStop(Integer status, Long id);
+
 
     /**
      * 条件查询菜品和口味
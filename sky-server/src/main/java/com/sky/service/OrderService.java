@@ -3,6 +3,8 @@ package com.sky.service;
 import com.sky.dto.*;
 import com.sky.vo.*;
 
+import java.util.List;
+
 public interface OrderService {
 
     /**
@@ -25,6 +27,13 @@ public interface OrderService {
      */
     void paySuccess(String outTradeNo);
 
+    /**
+     * 批量处理支付成功回调，一个事务内更新本批中所有待付款的订单
+     * @param outTradeNos 订单号
+     * @return 不是待付款状态、本批没有处理的订单号（重复回调、已取消等），由调用方逐条处理
+     */
+    List<String> paySuccessBatch(List<String> outTradeNos);
+
     /**
      * 查询订单详情
      * @param id 订单ID
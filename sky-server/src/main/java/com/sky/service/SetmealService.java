@@ -20,6 +20,19 @@ public interface SetmealService {
 
     void updateWithSetmeal(SetmealDTO setmealDTO);
 
+    /**
+     * 套餐起售、停售
+     * @param status
+     * @param id
+     */
+    void startOrStop(Integer status, Long id);
+
+    /**
+     * 批量删除套餐
+     * @param ids
+     */
+    void deleteBatch(List<Long> ids);
+
     /**
      * 根据id查询菜品选项
      * @param id
@@ -15,4 +15,10 @@ public interface ShoppingCartService {
     List<ShoppingCart> showShoppingCart();
 
     void cleanShoppingCart();
+
+    /**
+     * 下单后移除已下单的商品，读取购物车之后新加入的商品和增加的数量保留在购物车中
+     * @param ordered 下单时读取的购物车数据
+     */
+    void removeOrdered(List<ShoppingCart> ordered);
 }
@@ -2,6 +2,9 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCache;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -21,7 +24,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Service
 public class DishServiceImpl implements DishService {
@@ -34,6 +42,12 @@ public class DishServiceImpl implements DishService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private MenuCache menuCache;
+
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+
     /**
      * 新增菜品
      * @param dishDTO
@@ -57,6 +71,10 @@ public class DishServiceImpl implements DishService {
             //批量插入
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        //事务提交后清理所属分类的菜品缓存
+        cleanCache(Collections.singletonList(dish.getCategoryId()));
+        productSnapshotCache.refreshDishesAfterCommit(Collections.singletonList(dishId));
     }
 
     /**
@@ -109,6 +127,10 @@ public class DishServiceImpl implements DishService {
         dishMapper.deleteByIds(ids);
         //删除口味表中的数据
         dishFlavorMapper.deleteByDishIds(ids);
+
+        //事务提交后清理被删除菜品所属分类的缓存
+        cleanCache(dish.stream().map(Dish::getCategoryId).collect(Collectors.toList()));
+        productSnapshotCache.refreshDishesAfterCommit(ids);
     }
 
     /**
@@ -148,6 +170,9 @@ public class DishServiceImpl implements DishService {
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO, dish);
 
+        //查询修改前的菜品，菜品换了分类时新旧分类的缓存都要清理
+        Dish dishDB = dishMapper.getById(dishDTO.getId());
+
         //修改菜品表dish，执行update操作
         dishMapper.update(dish);
 
@@ -162,6 +187,57 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        //事务提交后清理新旧分类的菜品缓存，以及包含该菜品的套餐菜品缓存
+        List<Long> categoryIds = new ArrayList<>();
+        if (dishDB != null) {
+            categoryIds.add(dishDB.getCategoryId());
+        }
+        categoryIds.add(dish.getCategoryId());
+        cleanCache(categoryIds);
+        productSnapshotCache.refreshDishesAfterCommit(Collections.singletonList(dishDTO.getId()));
+
+        List<Long> setmealIds = setmealDishMapper.getSetmealIdsByDishIds(Collections.singletonList(dishDTO.getId()));
+        if (setmealIds != null && setmealIds.size() > 0) {
+            menuCache.evictAfterCommit(setmealIds.stream()
+                    .map(setmealId -> CacheConstant.SETMEAL_DISH_KEY_PREFIX + setmealId)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * 菜品起售、停售
+     * @param status
+     * @param id
+     */
+    @Transactional
+    public void startOrStop(Integer status, Long id) {
+        Dish dishDB = dishMapper.getById(id);
+
+        Dish dish = Dish.builder()
+                .id(id)
+                .status(status)
+                .build();
+        dishMapper.update(dish);
+
+        //事务提交后清理所属分类的菜品缓存
+        if (dishDB != null) {
+            cleanCache(Collections.singletonList(dishDB.getCategoryId()));
+        }
+        productSnapshotCache.refreshDishesAfterCommit(Collections.singletonList(id));
+    }
+
+    /**
+     * 清理指定分类的菜品缓存，只清理受影响的分类
+     * @param categoryIds
+     */
+    private void cleanCache(Collection<Long> categoryIds) {
+        List<String> keys = categoryIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(categoryId -> CacheConstant.DISH_KEY_PREFIX + categoryId)
+                .collect(Collectors.toList());
+        menuCache.evictAfterCommit(keys);
     }
 
 
@@ -172,17 +248,23 @@ public class DishServiceImpl implements DishService {
      */
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.list(dish);
+        if (dishList == null || dishList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        //一次查询出所有菜品的口味，再按菜品id分组，避免逐个菜品查询
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
-        List<DishVO> dishVOList = new ArrayList<>();
+        List<DishVO> dishVOList = new ArrayList<>(dishList.size());
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            //根据菜品id取出对应的口味
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
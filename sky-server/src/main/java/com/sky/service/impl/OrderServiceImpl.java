@@ -4,6 +4,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.ProductSnapshotCache;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
@@ -12,29 +13,38 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.properties.OrderTimeoutProperties;
+import com.sky.properties.PaymentProperties;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
+import com.sky.task.OrderTimeoutQueue;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.utils.MockWeChatPayUtil;
-import com.sky.websocket.OrderWebSocket;
-import com.sky.websocket.AdminWebSocket;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.websocket.WebSocketEventDispatcher;
+import com.sky.websocket.event.NewOrderEvent;
+import com.sky.websocket.event.PaymentSucceededEvent;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -43,12 +53,26 @@ import java.util.stream.Collectors;
 @Service
 @Slf4j
 public class OrderServiceImpl implements OrderService {
+
+    /**
+     * 支付金额，演示环境固定为0.01元，退款时原路退回相同金额
+     */
+    private static final BigDecimal PAY_AMOUNT = new BigDecimal("0.01");
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
     private OrderDetailMapper orderDetailMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private WebSocketEventDispatcher webSocketEventDispatcher;
+    @Autowired
+    private OrderTimeoutProperties orderTimeoutProperties;
     @Autowired
     private UserMapper userMapper;
     @Autowired
@@ -57,96 +81,148 @@ public class OrderServiceImpl implements OrderService {
     private WeChatPayUtil weChatPayUtil;
     @Autowired
     private MockWeChatPayUtil mockWeChatPayUtil;
+    @Autowired
+    private PaymentProperties paymentProperties;
+    @Autowired
+    private ScheduledThreadPoolExecutor mockPaymentScheduler;
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * 用户下单
+     * 分为校验、计价、写库三个阶段，前两个阶段不占用事务，写库阶段在一个短事务中完成
+     * 写库阶段是三条sql：插入订单、批量插入明细、移除已下单的购物车数据，和拆分前的条数相同，缩短的是事务持有连接的时间
+     * 明细需要订单的自增id，订单和明细不能合并成一次提交；合并明细和购物车两条sql需要开启allowMultiQueries，目前没有这样做
+     * 购物车只移除下单时读取的商品，读取之后新加入的商品保留
      *
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
+        Timer.Sample totalSample = Timer.start(meterRegistry);
+        Long userId = BaseContext.getCurrentId();
+
+        // ========== 1、校验：收货地址、购物车 ==========
+        Timer.Sample sample = Timer.start(meterRegistry);
         //异常情况的处理（收货地址为空、购物车为空）
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
         if (addressBook == null) {
             throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
 
-        Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-
         //查询当前用户的购物车数据
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartService.showShoppingCart();
         if (shoppingCartList == null || shoppingCartList.size() == 0) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
+        sample.stop(submitTimer("validate"));
+
+        // ========== 2、计价：在内存中构造订单和订单明细 ==========
+        sample = Timer.start(meterRegistry);
+        //按商品快照中的当前价格计价，加入购物车后被删除或停售的商品不能下单
+        for (ShoppingCart cart : shoppingCartList) {
+            ProductSnapshotCache.ProductSnapshot product = cart.getDishId() != null
+                    ? productSnapshotCache.getDish(cart.getDishId())
+                    : productSnapshotCache.getSetmeal(cart.getSetmealId());
+            if (product == null || !product.onSale()) {
+                throw new ShoppingCartBusinessException(MessageConstant.PRODUCT_NOT_ON_SALE);
+            }
+            cart.setAmount(product.getPrice());
+        }
+        Orders order = buildOrder(ordersSubmitDTO, addressBook, shoppingCartList, userId);
+
+        //订单明细数据
+        List<OrderDetail> orderDetailList = new ArrayList<>(shoppingCartList.size());
+        for (ShoppingCart cart : shoppingCartList) {
+            OrderDetail orderDetail = new OrderDetail();
+            BeanUtils.copyProperties(cart, orderDetail);
+            orderDetailList.add(orderDetail);
+        }
+        sample.stop(submitTimer("price"));
+
+        // ========== 3、写库：订单、明细、移除已下单的购物车数据各一条sql ==========
+        sample = Timer.start(meterRegistry);
+        transactionTemplate.executeWithoutResult(status -> {
+            //向订单表插入1条数据
+            orderMapper.insert(order);
+
+            //向明细表插入n条数据
+            orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(order.getId()));
+            orderDetailMapper.insertBatch(orderDetailList);
+
+            //只移除已下单的购物车数据，下单期间新加入的商品保留
+            shoppingCartService.removeOrdered(shoppingCartList);
+        });
+        sample.stop(submitTimer("persist"));
+
+        //订单加入超时队列，到期未支付自动取消
+        orderTimeoutQueue.add(order.getId(), System.currentTimeMillis() + orderTimeoutProperties.getTimeout());
 
-        //构造订单数据
+        //封装返回结果
+        OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
+                .id(order.getId())
+                .orderNumber(order.getNumber())
+                .orderAmount(order.getAmount())
+                .orderTime(order.getOrderTime())
+                .build();
+
+        totalSample.stop(submitTimer("total"));
+        return orderSubmitVO;
+    }
+
+    /**
+     * 构造订单数据，前端没传金额时根据购物车计算
+     */
+    private Orders buildOrder(OrdersSubmitDTO ordersSubmitDTO, AddressBook addressBook,
+                              List<ShoppingCart> shoppingCartList, Long userId) {
         Orders order = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO,order);
         order.setPhone(addressBook.getPhone());
         order.setAddress(addressBook.getDetail());
         order.setConsignee(addressBook.getConsignee());
-        order.setNumber(String.valueOf(System.currentTimeMillis()));
+        order.setNumber(String.valueOf(snowflakeIdGenerator.nextId()));
         order.setUserId(userId);
         order.setStatus(Orders.PENDING_PAYMENT);
         order.setPayStatus(Orders.UN_PAID);
         order.setOrderTime(LocalDateTime.now());
-        
+
         // 如果前端没传预计送达时间，默认1小时后
         if (order.getEstimatedDeliveryTime() == null) {
             order.setEstimatedDeliveryTime(LocalDateTime.now().plusHours(1));
         }
-        
+
         // ========== 后端计算订单金额 ==========
         // 如果前端没传金额或金额为null，从购物车计算
         if (order.getAmount() == null) {
             BigDecimal totalAmount = BigDecimal.ZERO;
-            
+
             // 累加购物车中所有商品的金额
             for (ShoppingCart cart : shoppingCartList) {
                 BigDecimal itemAmount = cart.getAmount().multiply(new BigDecimal(cart.getNumber()));
                 totalAmount = totalAmount.add(itemAmount);
             }
-            
+
             // 加上配送费（如果有）
             if (ordersSubmitDTO.getPackAmount() != null && ordersSubmitDTO.getPackAmount() > 0) {
                 // 这里假设packAmount是配送费，根据实际业务调整
                 // totalAmount = totalAmount.add(new BigDecimal(ordersSubmitDTO.getPackAmount()));
             }
-            
+
             order.setAmount(totalAmount);
             log.info("【订单提交】后端计算订单金额：{}", totalAmount);
         }
+        return order;
+    }
 
-        //向订单表插入1条数据
-        orderMapper.insert(order);
-
-        //订单明细数据
-        List<OrderDetail> orderDetailList = new ArrayList<>();
-        for (ShoppingCart cart : shoppingCartList) {
-            OrderDetail orderDetail = new OrderDetail();
-            BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(order.getId());
-            orderDetailList.add(orderDetail);
-        }
-
-        //向明细表插入n条数据
-        orderDetailMapper.insertBatch(orderDetailList);
-
-        //清理购物车中的数据
-        shoppingCartMapper.deleteByUserId(userId);
-
-        //封装返回结果
-        OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
-                .id(order.getId())
-                .orderNumber(order.getNumber())
-                .orderAmount(order.getAmount())
-                .orderTime(order.getOrderTime())
-                .build();
-
-        return orderSubmitVO;
+    /**
+     * 下单各阶段耗时指标
+     */
+    private Timer submitTimer(String stage) {
+        return meterRegistry.timer("sky.order.submit", "stage", stage);
     }
 
     /**
@@ -160,12 +236,9 @@ public class OrderServiceImpl implements OrderService {
         Long userId = BaseContext.getCurrentId();
         User user = userMapper.getById(userId);
 
-        // 判断是否使用模拟支付（开发环境使用模拟支付）
-        boolean useMockPayment = true; // 可以从配置文件读取
-        
         JSONObject jsonObject;
         
-        if (useMockPayment) {
+        if (paymentProperties.isMockMode()) {
             // ========== 使用模拟支付 ==========
             log.info("========== 【模拟支付模式】 ==========");
             log.info("【模拟支付】订单号：{}", ordersPaymentDTO.getOrderNumber());
@@ -173,30 +246,20 @@ public class OrderServiceImpl implements OrderService {
             // 调用模拟支付工具类
             jsonObject = mockWeChatPayUtil.pay(
                     ordersPaymentDTO.getOrderNumber(),
-                    new BigDecimal("0.01"),
+                    PAY_AMOUNT,
                     "苍穹外卖订单",
                     user.getOpenid()
             );
             
-            // 模拟3秒后自动支付成功（异步执行）
-            String orderNumber = ordersPaymentDTO.getOrderNumber();
-            CompletableFuture.runAsync(() -> {
-                try {
-                    log.info("【模拟支付】等待3秒后自动触发支付成功...");
-                    Thread.sleep(3000);
-                    log.info("【模拟支付】3秒已到，触发支付成功回调");
-                    paySuccess(orderNumber);
-                } catch (Exception e) {
-                    log.error("【模拟支付】自动回调失败", e);
-                }
-            });
+            // 延迟后自动支付成功
+            scheduleMockPaySuccess(ordersPaymentDTO.getOrderNumber());
             
         } else {
             // ========== 使用真实支付 ==========
             log.info("========== 【真实支付模式】 ==========");
             jsonObject = weChatPayUtil.pay(
                     ordersPaymentDTO.getOrderNumber(),
-                    new BigDecimal(0.01),
+                    PAY_AMOUNT,
                     "苍穹外卖订单",
                     user.getOpenid()
             );
@@ -212,6 +275,31 @@ public class OrderServiceImpl implements OrderService {
         return vo;
     }
 
+    /**
+     * 模拟支付：延迟一段时间后触发支付成功回调
+     * 由专用调度线程池执行，等待期间不占用线程
+     */
+    private void scheduleMockPaySuccess(String orderNumber) {
+        long delay = paymentProperties.getMock().getAutoDelay();
+        if (mockPaymentScheduler.getQueue().size() >= paymentProperties.getMock().getMaxPending()) {
+            log.warn("【模拟支付】待执行的自动回调过多，不再自动回调，订单号：{}", orderNumber);
+            return;
+        }
+        long scheduledTime = System.currentTimeMillis() + delay;
+        mockPaymentScheduler.schedule(() -> {
+            //实际执行时间相对计划时间的延迟
+            meterRegistry.timer("sky.payment.mock.lag")
+                    .record(Math.max(System.currentTimeMillis() - scheduledTime, 0), TimeUnit.MILLISECONDS);
+            try {
+                log.info("【模拟支付】{}毫秒已到，触发支付成功回调", delay);
+                paySuccess(orderNumber);
+            } catch (Exception e) {
+                log.error("【模拟支付】自动回调失败", e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        log.info("【模拟支付】等待{}毫秒后自动触发支付成功...", delay);
+    }
+
     /**
      * 支付成功，修改订单状态
      *
@@ -221,60 +309,116 @@ public class OrderServiceImpl implements OrderService {
         log.info("========== 【支付成功回调】开始处理 ==========");
         log.info("【支付成功】订单号：{}", outTradeNo);
 
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
-        
-        if (ordersDB == null) {
-            log.error("【支付成功】订单不存在，订单号：{}", outTradeNo);
+        // 只更新待付款的订单，重复回调、多节点并发回调时只有一个能更新成功，已超时取消的订单不会被恢复
+        LocalDateTime checkoutTime = LocalDateTime.now();
+        int count = orderMapper.updatePaySuccess(outTradeNo, Orders.PENDING_PAYMENT,
+                Orders.TO_BE_CONFIRMED, Orders.PAID, checkoutTime);
+        if (count == 0) {
+            Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+            if (ordersDB != null && Orders.CANCELLED.equals(ordersDB.getStatus())
+                    && Orders.UN_PAID.equals(ordersDB.getPayStatus())) {
+                refundPaidAfterCancel(outTradeNo);
+                return;
+            }
+            log.warn("【支付成功】订单不存在或已支付，忽略重复回调，订单号：{}", outTradeNo);
             return;
         }
-        
-        // 检查订单状态，防止重复处理
-        if (ordersDB.getPayStatus().equals(Orders.PAID)) {
-            log.warn("【支付成功】订单已支付，忽略重复回调，订单号：{}", outTradeNo);
-            return;
+
+        // 更新成功后再查询订单，用于推送消息
+        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+        log.info("【支付成功】订单状态已更新，订单ID：{}，状态：待接单", ordersDB.getId());
+        notifyPaid(ordersDB, checkoutTime);
+
+        log.info("========== 【支付成功回调】处理完成 ==========");
+    }
+
+    /**
+     * 批量处理支付成功回调
+     * 一个事务内锁定本批中仍待付款的订单并用一条sql更新，提交后逐个推送；
+     * 其余订单号（重复回调、已取消后才支付等）返回给调用方，按paySuccess逐条处理
+     *
+     * @param outTradeNos
+     * @return
+     */
+    public List<String> paySuccessBatch(List<String> outTradeNos) {
+        List<String> numbers = outTradeNos.stream().distinct().collect(Collectors.toList());
+        LocalDateTime checkoutTime = LocalDateTime.now();
+        List<Orders> paidOrders = transactionTemplate.execute(status -> {
+            List<Orders> orders = orderMapper.getByNumbersAndStatusForUpdate(numbers, Orders.PENDING_PAYMENT);
+            if (orders.isEmpty()) {
+                return orders;
+            }
+            List<Long> ids = orders.stream().map(Orders::getId).collect(Collectors.toList());
+            orderMapper.updatePaySuccessBatch(ids, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.PAID, checkoutTime);
+            return orders;
+        });
+        if (paidOrders == null || paidOrders.isEmpty()) {
+            return numbers;
         }
+        log.info("【支付成功】批量更新{}个订单，状态：待接单", paidOrders.size());
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
-                .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
-                .build();
+        Set<String> paidNumbers = new HashSet<>();
+        for (Orders order : paidOrders) {
+            paidNumbers.add(order.getNumber());
+            notifyPaid(order, checkoutTime);
+        }
+        return numbers.stream().filter(number -> !paidNumbers.contains(number)).collect(Collectors.toList());
+    }
+
+    /**
+     * 订单支付成功后移出超时队列，推送支付成功消息给用户、来单提醒给商家
+     */
+    private void notifyPaid(Orders ordersDB, LocalDateTime checkoutTime) {
+        String outTradeNo = ordersDB.getNumber();
+        orderTimeoutQueue.remove(ordersDB.getId());
 
-        orderMapper.update(orders);
-        log.info("【支付成功】订单状态已更新，订单ID：{}，状态：待接单", ordersDB.getId());
-        
         // ========== WebSocket推送 ==========
-        Long userId = ordersDB.getUserId();
-        
-        // 构造推送给用户的数据
-        Map<String, Object> orderData = new HashMap<>();
-        orderData.put("orderId", ordersDB.getId());
-        orderData.put("orderNumber", outTradeNo);
-        orderData.put("amount", ordersDB.getAmount());
-        orderData.put("payTime", LocalDateTime.now());
-        
         // 推送支付成功消息给用户
-        OrderWebSocket.sendPaymentSuccess(userId, outTradeNo, orderData);
-        log.info("【支付成功】WebSocket推送给用户完成，用户ID：{}", userId);
-        
-        // 构造推送给商家的数据
-        Map<String, Object> merchantData = new HashMap<>();
-        merchantData.put("orderId", ordersDB.getId());
-        merchantData.put("orderNumber", outTradeNo);
-        merchantData.put("amount", ordersDB.getAmount());
-        merchantData.put("consignee", ordersDB.getConsignee());
-        merchantData.put("phone", ordersDB.getPhone());
-        merchantData.put("address", ordersDB.getAddress());
-        merchantData.put("orderTime", ordersDB.getOrderTime());
+        webSocketEventDispatcher.dispatch(PaymentSucceededEvent.builder()
+                .userId(ordersDB.getUserId())
+                .orderId(ordersDB.getId())
+                .orderNumber(outTradeNo)
+                .amount(ordersDB.getAmount())
+                .payTime(checkoutTime)
+                .build());
+        log.info("【支付成功】WebSocket推送给用户完成，用户ID：{}", ordersDB.getUserId());
         
         // 推送来单提醒给商家
-        AdminWebSocket.sendNewOrder(merchantData);
+        webSocketEventDispatcher.dispatch(NewOrderEvent.builder()
+                .orderId(ordersDB.getId())
+                .orderNumber(outTradeNo)
+                .amount(ordersDB.getAmount())
+                .consignee(ordersDB.getConsignee())
+                .phone(ordersDB.getPhone())
+                .address(ordersDB.getAddress())
+                .orderTime(ordersDB.getOrderTime())
+                .build());
         log.info("【支付成功】WebSocket推送来单提醒给商家完成");
-        
-        log.info("========== 【支付成功回调】处理完成 ==========");
+    }
+
+    /**
+     * 订单取消后才收到支付成功回调（用户在超时取消前完成了支付），订单保持已取消，原路退款
+     * 退款单号使用订单号，重复回调或重试时微信不会重复退款；退款失败时抛出异常，由回调收件箱重试
+     *
+     * @param outTradeNo
+     */
+    private void refundPaidAfterCancel(String outTradeNo) {
+        log.error("【支付成功】订单已取消后收到支付成功回调，发起退款，订单号：{}", outTradeNo);
+        meterRegistry.counter("sky.payment.paid.after.cancel").increment();
+
+        if (paymentProperties.isMockMode()) {
+            log.info("【模拟支付】模拟退款，订单号：{}", outTradeNo);
+        } else {
+            try {
+                String result = weChatPayUtil.refund(outTradeNo, outTradeNo, PAY_AMOUNT, PAY_AMOUNT);
+                log.info("【支付成功】申请退款结果：{}", result);
+            } catch (Exception e) {
+                throw new OrderBusinessException("已取消订单退款失败，订单号：" + outTradeNo);
+            }
+        }
+
+        orderMapper.updatePayStatus(outTradeNo, Orders.CANCELLED, Orders.UN_PAID, Orders.REFUND);
+        log.info("【支付成功】已取消订单退款完成，订单号：{}", outTradeNo);
     }
 
     /**
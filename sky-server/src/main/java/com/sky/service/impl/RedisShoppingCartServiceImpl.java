@@ -0,0 +1,259 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 购物车，数据存储在redis哈希中
+ * shopping_cart:{userId} 存放 商品 -> 数量，通过HINCRBY原子累加
+ * shopping_cart_item:{userId} 存放 商品 -> 名称、图片、单价等快照，与数量在同一个脚本中写入
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "storage", havingValue = "redis")
+public class RedisShoppingCartServiceImpl implements ShoppingCartService {
+
+    private static final String CART_KEY_PREFIX = "shopping_cart:";
+    private static final String ITEM_KEY_PREFIX = "shopping_cart_item:";
+    private static final String DIRTY_KEY = "shopping_cart_dirty";
+
+    /**
+     * 加入购物车，KEYS[1]=数量哈希，KEYS[2]=商品快照哈希，ARGV[1]=商品，ARGV[2]=商品快照，ARGV[3]=过期时间(毫秒)
+     * 第一次加入时保存商品快照，数量加1，并刷新过期时间，返回加入后的数量
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('hsetnx', KEYS[2], ARGV[1], ARGV[2]) " +
+            "local number = redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+            "redis.call('pexpire', KEYS[1], ARGV[3]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[3]) " +
+            "return number",
+            Long.class);
+
+    /**
+     * 移除已下单的商品，KEYS[1]=数量哈希，KEYS[2]=商品快照哈希，ARGV为 商品,已下单数量 依次排列
+     * 扣减已下单的数量，减到0的商品同时删除数量和快照
+     */
+    private static final RedisScript<Long> REMOVE_ORDERED_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do " +
+            "  local number = redis.call('hincrby', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1])) " +
+            "  if number <= 0 then " +
+            "    redis.call('hdel', KEYS[1], ARGV[i]) " +
+            "    redis.call('hdel', KEYS[2], ARGV[i]) " +
+            "  end " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+
+    /**
+     * 添加购物车
+     *
+     * @param shoppingCartDTO
+     */
+    public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+
+        //先查询商品快照，查询失败时不写入任何数据
+        ShoppingCart shoppingCart = new ShoppingCart();
+        shoppingCart.setDishId(shoppingCartDTO.getDishId());
+        shoppingCart.setSetmealId(shoppingCartDTO.getSetmealId());
+        shoppingCart.setDishFlavor(shoppingCartDTO.getDishFlavor());
+        if (shoppingCartDTO.getDishId() != null) {
+            //添加到购物车的是菜品
+            ProductSnapshotCache.ProductSnapshot dish = productSnapshotCache.getDish(shoppingCartDTO.getDishId());
+            checkOnSale(dish);
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        } else {
+            //添加到购物车的是套餐
+            ProductSnapshotCache.ProductSnapshot setmeal = productSnapshotCache.getSetmeal(shoppingCartDTO.getSetmealId());
+            checkOnSale(setmeal);
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        }
+        shoppingCart.setCreateTime(LocalDateTime.now());
+
+        //商品快照和数量在一个脚本中写入，不会出现只有数量没有商品的情况
+        stringRedisTemplate.execute(ADD_SCRIPT,
+                Arrays.asList(CART_KEY_PREFIX + userId, ITEM_KEY_PREFIX + userId),
+                field, JSON.toJSONString(shoppingCart), String.valueOf(shoppingCartProperties.getRedisTtl()));
+
+        markDirty(userId);
+    }
+
+    /**
+     * 查看购物车
+     * @return
+     */
+    public List<ShoppingCart> showShoppingCart() {
+        return listByUserId(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 清空购物车
+     * 在事务中调用时（如下单），等事务提交后再清空
+     */
+    public void cleanShoppingCart() {
+        Long userId = BaseContext.getCurrentId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clean(userId);
+                }
+            });
+        } else {
+            clean(userId);
+        }
+    }
+
+    /**
+     * 移除已下单的商品，只扣减下单时读取的数量，下单期间新加入的商品保留
+     * 在事务中调用时（如下单），等事务提交后再移除
+     */
+    public void removeOrdered(List<ShoppingCart> ordered) {
+        Long userId = BaseContext.getCurrentId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeOrdered(userId, ordered);
+                }
+            });
+        } else {
+            removeOrdered(userId, ordered);
+        }
+    }
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> listByUserId(Long userId) {
+        HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+        Map<String, String> numbers = hashOperations.entries(CART_KEY_PREFIX + userId);
+        if (numbers.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, String> items = hashOperations.entries(ITEM_KEY_PREFIX + userId);
+
+        List<ShoppingCart> shoppingCartList = new ArrayList<>(numbers.size());
+        numbers.forEach((field, number) -> {
+            String item = items.get(field);
+            int count = Integer.parseInt(number);
+            //商品快照还未写入或数量已减到0的跳过
+            if (item == null || count <= 0) {
+                return;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject(item, ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(count);
+            shoppingCartList.add(shoppingCart);
+        });
+        shoppingCartList.sort(Comparator.comparing(ShoppingCart::getCreateTime,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return shoppingCartList;
+    }
+
+    /**
+     * 查询一批待快照的用户，不会移除快照标记
+     * @param count
+     * @return
+     */
+    public List<Long> dirtyUsers(int count) {
+        Set<String> userIds = stringRedisTemplate.opsForSet().distinctRandomMembers(DIRTY_KEY, count);
+        if (userIds == null) {
+            return new ArrayList<>();
+        }
+        return userIds.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * 移除快照标记，在读取购物车之前调用，读取之后的修改会重新标记
+     * @param userId
+     */
+    public void clearDirty(Long userId) {
+        stringRedisTemplate.opsForSet().remove(DIRTY_KEY, String.valueOf(userId));
+    }
+
+    /**
+     * 商品已删除或停售时不能加入购物车
+     */
+    private static void checkOnSale(ProductSnapshotCache.ProductSnapshot product) {
+        if (product == null || !product.onSale()) {
+            throw new ShoppingCartBusinessException(MessageConstant.PRODUCT_NOT_ON_SALE);
+        }
+    }
+
+    private void removeOrdered(Long userId, List<ShoppingCart> ordered) {
+        List<String> args = new ArrayList<>(ordered.size() * 2);
+        for (ShoppingCart shoppingCart : ordered) {
+            args.add(field(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
+            args.add(String.valueOf(shoppingCart.getNumber()));
+        }
+        stringRedisTemplate.execute(REMOVE_ORDERED_SCRIPT,
+                Arrays.asList(CART_KEY_PREFIX + userId, ITEM_KEY_PREFIX + userId), args.toArray());
+        markDirty(userId);
+    }
+
+    private void clean(Long userId) {
+        stringRedisTemplate.delete(Arrays.asList(CART_KEY_PREFIX + userId, ITEM_KEY_PREFIX + userId));
+        markDirty(userId);
+    }
+
+    /**
+     * 标记需要快照，快照失败时也用于重新标记
+     * @param userId
+     */
+    public void markDirty(Long userId) {
+        if (shoppingCartProperties.isSnapshotEnabled()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(userId));
+        }
+    }
+
+    /**
+     * 购物车中商品的标识：菜品为 d{菜品id}:{口味}，套餐为 s{套餐id}
+     */
+    private String field(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null) {
+            return "d" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor);
+        }
+        return "s" + setmealId;
+    }
+}
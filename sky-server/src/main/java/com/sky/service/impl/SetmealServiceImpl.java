@@ -2,10 +2,19 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCache;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
+import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.exception.SetmealEnableFailedException;
+import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
@@ -18,7 +27,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 @Service
 @Slf4j
 public class SetmealServiceImpl implements SetmealService {
@@ -26,6 +40,12 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealMapper setmealMapper;
     @Autowired
     SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    @Autowired
+    private MenuCache menuCache;
     @Override
     /**
      * 条件查询
@@ -51,6 +71,10 @@ public class SetmealServiceImpl implements SetmealService {
             });
         }
         setmealDishMapper.inertBatch(setmealDishes);
+
+        //事务提交后清理新增套餐所属分类的缓存
+        cleanCache(Collections.singletonList(setmeal.getCategoryId()), Collections.emptyList());
+        productSnapshotCache.refreshSetmealsAfterCommit(Collections.singletonList(setmealId));
     }
 
     @Override
@@ -69,10 +93,14 @@ public class SetmealServiceImpl implements SetmealService {
         return setmealVO;
     }
 
+    @Transactional
     @Override
     public void updateWithSetmeal(SetmealDTO setmealDTO) {
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDTO, setmeal);
+
+        //查询修改前的套餐，套餐换了分类时新旧分类的缓存都要清理
+        Setmeal setmealDB = setmealMapper.getSetmealById(setmeal.getId());
         setmealMapper.updateById(setmeal);
 
         setmealDishMapper.deleteBySetmealId(setmeal.getId());
@@ -84,8 +112,92 @@ public class SetmealServiceImpl implements SetmealService {
             }
             setmealDishMapper.inertBatch(setmealDishes);
 
+        //事务提交后清理新旧分类的套餐缓存，以及当前套餐的菜品缓存
+        List<Long> categoryIds = new ArrayList<>();
+        if (setmealDB != null) {
+            categoryIds.add(setmealDB.getCategoryId());
+        }
+        categoryIds.add(setmeal.getCategoryId());
+        cleanCache(categoryIds, Collections.singletonList(setmeal.getId()));
+        productSnapshotCache.refreshSetmealsAfterCommit(Collections.singletonList(setmeal.getId()));
+    }
+
+    /**
+     * 套餐起售、停售，套餐内有停售菜品时不能起售
+     * @param status
+     * @param id
+     */
+    @Transactional
+    public void startOrStop(Integer status, Long id) {
+        if (StatusConstant.ENABLE.equals(status)) {
+            List<Long> dishIds = setmealDishMapper.getSetmealId(id).stream()
+                    .map(SetmealDish::getDishId)
+                    .collect(Collectors.toList());
+            if (!dishIds.isEmpty()) {
+                for (Dish dish : dishMapper.getByIds(dishIds)) {
+                    if (StatusConstant.DISABLE.equals(dish.getStatus())) {
+                        throw new SetmealEnableFailedException(MessageConstant.SETMEAL_ENABLE_FAILED);
+                    }
+                }
+            }
+        }
+
+        Setmeal setmealDB = setmealMapper.getSetmealById(id);
+
+        Setmeal setmeal = Setmeal.builder()
+                .id(id)
+                .status(status)
+                .build();
+        setmealMapper.updateById(setmeal);
+
+        //事务提交后清理所属分类的套餐缓存
+        if (setmealDB != null) {
+            cleanCache(Collections.singletonList(setmealDB.getCategoryId()), Collections.emptyList());
+        }
+
+        //事务提交后刷新商品快照，停售的套餐不能再加入购物车和下单
+        productSnapshotCache.refreshSetmealsAfterCommit(Collections.singletonList(id));
     }
 
+    /**
+     * 批量删除套餐，起售中的套餐不能删除
+     * @param ids
+     */
+    @Transactional
+    public void deleteBatch(List<Long> ids) {
+        List<Setmeal> setmeals = setmealMapper.getByIds(ids);
+        setmeals.forEach(setmeal -> {
+            if (StatusConstant.ENABLE.equals(setmeal.getStatus())) {
+                throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
+            }
+        });
+
+        //删除套餐表和套餐菜品关系表中的数据
+        setmealMapper.deleteByIds(ids);
+        setmealDishMapper.deleteBySetmealIds(ids);
+
+        //事务提交后清理被删除套餐所属分类的缓存，以及这些套餐的菜品缓存
+        cleanCache(setmeals.stream().map(Setmeal::getCategoryId).collect(Collectors.toList()), ids);
+
+        //事务提交后刷新商品快照，已删除的套餐从快照中移除
+        productSnapshotCache.refreshSetmealsAfterCommit(ids);
+    }
+
+
+    /**
+     * 清理指定分类的套餐缓存和指定套餐的菜品缓存，只清理受影响的key
+     * @param categoryIds
+     * @param setmealIds
+     */
+    private void cleanCache(Collection<Long> categoryIds, Collection<Long> setmealIds) {
+        List<String> keys = categoryIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(categoryId -> CacheConstant.SETMEAL_KEY_PREFIX + categoryId)
+                .collect(Collectors.toList());
+        setmealIds.forEach(setmealId -> keys.add(CacheConstant.SETMEAL_DISH_KEY_PREFIX + setmealId));
+        menuCache.evictAfterCommit(keys);
+    }
 
     /**
      * 根据id查询菜品选项
@@ -93,6 +205,21 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     public List<DishItemVO> getDishItemById(Long id) {
-        return setmealMapper.getDishItemBySetmealId(id);
+        //只查询套餐菜品关系表，菜品图片、描述从商品快照中获取
+        List<SetmealDish> setmealDishes = setmealDishMapper.getSetmealId(id);
+        List<DishItemVO> dishItemVOList = new ArrayList<>(setmealDishes.size());
+        for (SetmealDish setmealDish : setmealDishes) {
+            DishItemVO dishItemVO = DishItemVO.builder()
+                    .name(setmealDish.getName())
+                    .copies(setmealDish.getCopies())
+                    .build();
+            ProductSnapshotCache.ProductSnapshot dish = productSnapshotCache.getDish(setmealDish.getDishId());
+            if (dish != null) {
+                dishItemVO.setImage(dish.getImage());
+                dishItemVO.setDescription(dish.getDescription());
+            }
+            dishItemVOList.add(dishItemVO);
+        }
+        return dishItemVOList;
     }
 }
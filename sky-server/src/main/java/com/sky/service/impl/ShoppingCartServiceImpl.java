@@ -1,29 +1,31 @@
 package com.sky.service.impl;
 
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * 购物车，数据存储在shopping_cart表
+ */
 @Service
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "storage", havingValue = "db", matchIfMissing = true)
 public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
     @Autowired
-    private DishMapper dishMapper;
-    @Autowired
-    private SetmealMapper setmealMapper;
+    private ProductSnapshotCache productSnapshotCache;
 
     /**
      * 添加购物车
@@ -48,13 +50,15 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
             Long dishId = shoppingCartDTO.getDishId();
             if (dishId != null) {
                 //添加到购物车的是菜品
-                Dish dish = dishMapper.getById(dishId);
+                ProductSnapshotCache.ProductSnapshot dish = productSnapshotCache.getDish(dishId);
+                checkOnSale(dish);
                 shoppingCart.setName(dish.getName());
                 shoppingCart.setImage(dish.getImage());
                 shoppingCart.setAmount(dish.getPrice());
             } else {
                 //添加到购物车的是套餐
-                Setmeal setmeal = setmealMapper.getSetmealById(shoppingCartDTO.getSetmealId());
+                ProductSnapshotCache.ProductSnapshot setmeal = productSnapshotCache.getSetmeal(shoppingCartDTO.getSetmealId());
+                checkOnSale(setmeal);
                 shoppingCart.setName(setmeal.getName());
                 shoppingCart.setImage(setmeal.getImage());
                 shoppingCart.setAmount(setmeal.getPrice());
@@ -65,6 +69,15 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         }
     }
 
+    /**
+     * 商品已删除或停售时不能加入购物车
+     */
+    private static void checkOnSale(ProductSnapshotCache.ProductSnapshot product) {
+        if (product == null || !product.onSale()) {
+            throw new ShoppingCartBusinessException(MessageConstant.PRODUCT_NOT_ON_SALE);
+        }
+    }
+
     @Override
     /**
      * 查看购物车
@@ -82,4 +95,17 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         shoppingCartMapper.deleteByUserId(BaseContext.getCurrentId());
     }
 
+    @Override
+    /**
+     * 移除已下单的商品，和下单在同一个事务中执行
+     * 通常数量没有变化，一条delete即可；下单期间数量被增加的记录再扣减已下单的数量
+     */
+    public void removeOrdered(List<ShoppingCart> ordered) {
+        Long userId = BaseContext.getCurrentId();
+        int deleted = shoppingCartMapper.deleteOrdered(userId, ordered);
+        if (deleted < ordered.size()) {
+            shoppingCartMapper.subtractOrdered(userId, ordered);
+        }
+    }
+
 }
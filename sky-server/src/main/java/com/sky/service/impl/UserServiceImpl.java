@@ -37,6 +37,7 @@ public class UserServiceImpl implements UserService {
     public User wxLogin(UserLoginDTO userLoginDTO) {
         //授权码
         String code = userLoginDTO.getCode();
+        //请求通过连接池复用到微信服务器的长连接
         String openid = getOpenid(code);
 
         if(openid == null){
@@ -60,7 +61,7 @@ public class UserServiceImpl implements UserService {
     /**
      * 获取微信用户的openid
      * @param code
-     * @return
+     * @return 获取失败时返回null
      */
     private String getOpenid(String code){
         // ========== 开发环境：模拟登录 ==========
@@ -73,7 +74,7 @@ public class UserServiceImpl implements UserService {
         
         // ========== 生产环境：真实微信登录 ==========
         //请求参数封装
-        Map map = new HashMap();
+        Map<String, String> map = new HashMap<>();
         map.put("appid",weChatProperties.getAppid());
         map.put("secret",weChatProperties.getSecret());
         map.put("js_code",code);
@@ -83,9 +84,9 @@ public class UserServiceImpl implements UserService {
         String json = HttpClientUtil.doGet(WX_LOGIN, map);
         log.info("微信登录返回结果：{}", json);
 
-        //解析json字符串
+        //解析json字符串，请求失败时返回的是空字符串
         JSONObject jsonObject = JSON.parseObject(json);
-        String openid = jsonObject.getString("openid");
+        String openid = jsonObject == null ? null : jsonObject.getString("openid");
         log.info("微信用户的openid为：{}", openid);
 
         return openid;
@@ -0,0 +1,73 @@
+package com.sky.task;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * 订单号生成器最大时间戳保存任务
+ * 定时把已使用的最大时间戳加上预留时间保存到redis，节点重启后从保存的值之后开始生成订单号，
+ * 重启期间时钟回拨也不会和重启前生成的订单号重复
+ */
+@Component
+@Slf4j
+public class OrderNumberTask {
+
+    public static final String HIGH_WATER_MARK_KEY = "order_number_high_water_mark:";
+
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderNumberProperties orderNumberProperties;
+
+    /**
+     * 启动时先保存一次，保存失败时启动失败，不在没有预留的情况下生成订单号
+     */
+    @PostConstruct
+    public void init() {
+        save();
+    }
+
+    /**
+     * 定时保存
+     */
+    @Scheduled(fixedDelayString = "${sky.order-number.high-water-mark-interval:1000}")
+    public void saveHighWaterMark() {
+        try {
+            save();
+        } catch (Exception e) {
+            log.error("【订单号】保存已使用的最大时间戳失败", e);
+        }
+    }
+
+    /**
+     * 停止时保存
+     */
+    @PreDestroy
+    public void destroy() {
+        saveHighWaterMark();
+    }
+
+    /**
+     * 保存已使用的最大时间戳和当前时间中较大的一个加上预留时间
+     * 生成器从上次保存的值之后开始，已使用的最大时间戳大于上次保存的值，所以保存的值只增不减
+     */
+    void save() {
+        Long workerId = orderNumberProperties.getWorkerId();
+        if (workerId == null) {
+            return;
+        }
+        long highWaterMark = Math.max(snowflakeIdGenerator.getLastTimestamp(), System.currentTimeMillis())
+                + orderNumberProperties.getHighWaterMarkLease();
+        stringRedisTemplate.opsForValue().set(HIGH_WATER_MARK_KEY + workerId, String.valueOf(highWaterMark));
+    }
+}
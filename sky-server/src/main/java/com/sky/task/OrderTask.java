@@ -2,16 +2,19 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
-import com.sky.websocket.OrderWebSocket;
+import com.sky.properties.OrderTimeoutProperties;
+import com.sky.websocket.WebSocketEventDispatcher;
+import com.sky.websocket.event.OrderCancelledEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 订单定时任务
@@ -20,52 +23,99 @@ import java.util.Map;
 @Component
 @Slf4j
 public class OrderTask {
-    
+
+    private static final String TIMEOUT_CANCEL_REASON = "订单超时，自动取消";
+
     @Autowired
     private OrderMapper orderMapper;
-    
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private OrderTimeoutProperties orderTimeoutProperties;
+    @Autowired
+    private WebSocketEventDispatcher webSocketEventDispatcher;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 消费订单超时延时队列
+     * 每秒取出已到期的订单批量取消，直到队列中没有到期订单
+     * 取出的订单已从队列删除，取消失败时重新加入队列，稍后再次处理
+     */
+    @Scheduled(fixedDelayString = "${sky.order-timeout.poll-interval:1000}")
+    public void consumeTimeoutQueue() {
+        int batchSize = orderTimeoutProperties.getBatchSize();
+        List<Long> ids;
+        do {
+            ids = orderTimeoutQueue.pollExpired(System.currentTimeMillis(), batchSize);
+            if (ids.size() > 0) {
+                try {
+                    cancelTimeoutOrders(ids);
+                } catch (Exception e) {
+                    log.error("【定时任务】取消超时订单失败，重新加入队列，订单ID：{}", ids, e);
+                    orderTimeoutQueue.addAll(ids, System.currentTimeMillis() + orderTimeoutProperties.getRetryDelay());
+                    return;
+                }
+            }
+        } while (ids.size() == batchSize);
+    }
+
     /**
-     * 处理超时订单
-     * 每分钟执行一次，检查并取消15分钟未支付的订单
+     * 兜底处理超时订单
+     * 延时队列写入失败或redis数据丢失时，由该任务低频扫描取消
      */
-    @Scheduled(cron = "0 * * * * ?") // 每分钟的第0秒执行
+    @Scheduled(cron = "0 0/15 * * * ?") // 每15分钟执行一次
     public void processTimeoutOrder() {
-        log.info("========== 【定时任务】开始处理超时订单 ==========");
-        
-        // 查询15分钟前创建的待付款订单
-        LocalDateTime time = LocalDateTime.now().minusMinutes(15);
-        
-        // 查询超时订单
-        List<Orders> timeoutOrders = orderMapper.getByStatusAndOrderTimeLT(
-            Orders.PENDING_PAYMENT, time);
-        
+        log.info("========== 【定时任务】开始兜底处理超时订单 ==========");
+
+        // 查询超时的待付款订单
+        LocalDateTime time = LocalDateTime.now().minus(orderTimeoutProperties.getTimeout(), ChronoUnit.MILLIS);
+        List<Orders> timeoutOrders = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, time);
+
         if (timeoutOrders != null && timeoutOrders.size() > 0) {
             log.info("【定时任务】发现{}个超时订单", timeoutOrders.size());
-            
-            for (Orders order : timeoutOrders) {
-                // 更新订单状态为已取消
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason("订单超时，自动取消");
-                order.setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
-                
-                log.info("【定时任务】订单{}已取消，订单号：{}", order.getId(), order.getNumber());
-                
-                // 推送WebSocket消息给用户
-                Map<String, Object> orderData = new HashMap<>();
-                orderData.put("orderId", order.getId());
-                orderData.put("orderNumber", order.getNumber());
-                orderData.put("cancelReason", "订单超时，自动取消");
-                
-                OrderWebSocket.sendOrderCancel(order.getUserId(), orderData);
-                log.info("【定时任务】已推送取消通知给用户，用户ID：{}", order.getUserId());
+            List<Long> ids = timeoutOrders.stream().map(Orders::getId).collect(Collectors.toList());
+            int batchSize = orderTimeoutProperties.getBatchSize();
+            for (int i = 0; i < ids.size(); i += batchSize) {
+                cancelTimeoutOrders(ids.subList(i, Math.min(i + batchSize, ids.size())));
             }
-            
-            log.info("【定时任务】处理超时订单完成，共处理{}个订单", timeoutOrders.size());
         } else {
             log.info("【定时任务】没有超时订单");
         }
-        
-        log.info("========== 【定时任务】处理超时订单结束 ==========");
+
+        log.info("========== 【定时任务】兜底处理超时订单结束 ==========");
+    }
+
+    /**
+     * 批量取消超时订单，已支付的订单不受影响，并推送取消通知给用户
+     * 先锁定仍未支付的订单再取消，延时队列和兜底任务同时取消同一订单时，只有先锁定的一方会推送通知
+     * @param ids
+     */
+    void cancelTimeoutOrders(List<Long> ids) {
+        List<Orders> cancelledOrders = transactionTemplate.execute(status -> {
+            List<Orders> orders = orderMapper.getByIdsAndStatusForUpdate(ids, Orders.PENDING_PAYMENT);
+            if (orders.isEmpty()) {
+                return orders;
+            }
+            List<Long> lockedIds = orders.stream().map(Orders::getId).collect(Collectors.toList());
+            orderMapper.cancelBatch(lockedIds, Orders.PENDING_PAYMENT, Orders.CANCELLED,
+                    TIMEOUT_CANCEL_REASON, LocalDateTime.now());
+            return orders;
+        });
+        if (cancelledOrders == null || cancelledOrders.isEmpty()) {
+            return;
+        }
+        log.info("【定时任务】已取消{}个超时订单", cancelledOrders.size());
+
+        for (Orders order : cancelledOrders) {
+            // 推送WebSocket消息给用户
+            webSocketEventDispatcher.dispatch(OrderCancelledEvent.builder()
+                    .userId(order.getUserId())
+                    .orderId(order.getId())
+                    .orderNumber(order.getNumber())
+                    .cancelReason(TIMEOUT_CANCEL_REASON)
+                    .build());
+            log.info("【定时任务】订单{}已取消，已推送取消通知给用户，用户ID：{}", order.getNumber(), order.getUserId());
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.sky.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 订单超时延时队列
+ * 基于redis有序集合，成员为订单id，分值为超时时间戳(毫秒)
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+
+    private static final String QUEUE_KEY = "order_timeout_queue";
+
+    /**
+     * 取出并删除已到期的订单，多个节点同时轮询时每个订单只会被一个节点取到
+     */
+    private static final RedisScript<List> POLL_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], 0, ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return ids",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 订单加入延时队列
+     * redis不可用时只记录日志，由兜底定时任务取消
+     * @param orderId
+     * @param deadline 超时时间戳(毫秒)
+     */
+    public void add(Long orderId, long deadline) {
+        try {
+            stringRedisTemplate.opsForZSet().add(QUEUE_KEY, String.valueOf(orderId), deadline);
+        } catch (Exception e) {
+            log.warn("【订单超时队列】加入队列失败，订单ID：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 订单重新加入延时队列，用于取出后处理失败的订单
+     * redis不可用时只记录日志，由兜底定时任务取消
+     * @param orderIds
+     * @param deadline 超时时间戳(毫秒)
+     */
+    public void addAll(List<Long> orderIds, long deadline) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = orderIds.stream()
+                .map(id -> new DefaultTypedTuple<>(String.valueOf(id), (double) deadline))
+                .collect(Collectors.toSet());
+        try {
+            stringRedisTemplate.opsForZSet().add(QUEUE_KEY, tuples);
+        } catch (Exception e) {
+            log.warn("【订单超时队列】重新加入队列失败，订单ID：{}", orderIds, e);
+        }
+    }
+
+    /**
+     * 订单移出延时队列
+     * @param orderId
+     */
+    public void remove(Long orderId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(QUEUE_KEY, String.valueOf(orderId));
+        } catch (Exception e) {
+            log.warn("【订单超时队列】移出队列失败，订单ID：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 取出一批已到期的订单id
+     * @param now 当前时间戳(毫秒)
+     * @param count 最大数量
+     * @return
+     */
+    public List<Long> pollExpired(long now, int count) {
+        List<String> ids = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(QUEUE_KEY),
+                String.valueOf(now), String.valueOf(count));
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ids.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+}
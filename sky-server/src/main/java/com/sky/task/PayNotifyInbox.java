@@ -0,0 +1,334 @@
+package com.sky.task;
+
+import com.sky.properties.PaymentProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 支付回调收件箱
+ * 基于redis stream，回调接口解密后写入即可响应微信，由消费者组异步处理
+ * 处理失败的消息按指数退避延后重试，多次失败后转入死信stream，宕机节点未确认的消息由其他节点认领后重新处理
+ * 只使用redis 5.0的stream命令（XREADGROUP、XPENDING、XCLAIM、XACK、XDEL），不依赖6.2新增的XAUTOCLAIM
+ */
+@Component
+@Slf4j
+public class PayNotifyInbox {
+
+    private static final String STREAM_KEY = "pay_notify_inbox";
+    private static final String GROUP = "pay_notify_group";
+
+    /**
+     * 死信stream，保存多次处理失败的消息，需要人工处理
+     */
+    private static final String DEAD_LETTER_KEY = "pay_notify_dead";
+
+    /**
+     * 消息id -> 处理失败次数
+     */
+    private static final String ATTEMPTS_KEY = "pay_notify_attempts";
+
+    /**
+     * 每个消费者等待重试的消息，zset，score为下次处理的时间
+     */
+    private static final String RETRY_KEY_PREFIX = "pay_notify_retry:";
+
+    public static final String ATTEMPTS = "attempts";
+    public static final String ERROR = "error";
+
+    public static final String OUT_TRADE_NO = "outTradeNo";
+    public static final String TRANSACTION_ID = "transactionId";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private PaymentProperties paymentProperties;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    /**
+     * 本节点的消费者名称
+     */
+    private String consumer;
+
+    /**
+     * 本节点等待重试的消息
+     */
+    private String retryKey;
+
+    /**
+     * 确定消费者名称，创建消费者组，stream不存在时一并创建
+     */
+    @PostConstruct
+    public void init() {
+        consumer = resolveConsumer();
+        retryKey = RETRY_KEY_PREFIX + consumer;
+        log.info("支付回调收件箱消费者：{}", consumer);
+        try {
+            stringRedisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0"), GROUP);
+        } catch (RedisSystemException e) {
+            //消费者组已存在
+            log.debug("支付回调收件箱消费者组已存在：{}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("支付回调收件箱消费者组创建失败", e);
+        }
+        try {
+            recoverPending();
+        } catch (Exception e) {
+            log.warn("支付回调收件箱恢复未确认的消息失败，由其他节点空闲认领", e);
+        }
+    }
+
+    /**
+     * 重启后把本消费者上次已读取但未确认的消息加入重试，已在重试中的保持原来的重试时间
+     */
+    private void recoverPending() {
+        long now = System.currentTimeMillis();
+        for (PendingMessage message : pending(consumer)) {
+            stringRedisTemplate.opsForZSet().addIfAbsent(retryKey, message.getIdAsString(), now);
+        }
+    }
+
+    /**
+     * 分页查询全部未确认的消息
+     * 按id范围翻页时下一页从上一页最后一条开始（含），跳过重复的这一条，不使用redis 6.2才支持的开区间
+     * @param consumerName 消费者，为null时查询整个消费者组
+     * @return
+     */
+    private List<PendingMessage> pending(String consumerName) {
+        int pageSize = paymentProperties.getNotify().getBatchSize();
+        List<PendingMessage> result = new ArrayList<>();
+        String lastId = null;
+        while (true) {
+            Range<String> range = lastId == null ? Range.unbounded()
+                    : Range.of(Range.Bound.inclusive(lastId), Range.Bound.unbounded());
+            PendingMessages page = consumerName == null
+                    ? stringRedisTemplate.opsForStream().pending(STREAM_KEY, GROUP, range, pageSize)
+                    : stringRedisTemplate.opsForStream().pending(STREAM_KEY, Consumer.from(GROUP, consumerName), range, pageSize);
+            int added = 0;
+            for (PendingMessage message : page) {
+                if (!message.getIdAsString().equals(lastId)) {
+                    result.add(message);
+                    added++;
+                }
+            }
+            if (added == 0 || page.size() < pageSize) {
+                return result;
+            }
+            lastId = page.get(page.size() - 1).getIdAsString();
+        }
+    }
+
+    /**
+     * 消费者名称，未配置时使用主机名和端口，集群内每个节点不同，重启后保持不变
+     */
+    private String resolveConsumer() {
+        String configured = paymentProperties.getNotify().getConsumer();
+        if (StringUtils.hasText(configured)) {
+            return configured;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = UUID.randomUUID().toString();
+            log.warn("获取主机名失败，支付回调收件箱消费者使用随机名称：{}", host);
+        }
+        return host + ":" + serverPort;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * 写入一条支付成功回调
+     * @param outTradeNo 商户平台订单号
+     * @param transactionId 微信支付交易号
+     * @return 消息id
+     */
+    public RecordId append(String outTradeNo, String transactionId) {
+        Map<String, String> message = new HashMap<>();
+        message.put(OUT_TRADE_NO, outTradeNo);
+        message.put(TRANSACTION_ID, transactionId == null ? "" : transactionId);
+        return stringRedisTemplate.opsForStream().add(StreamRecords.string(message).withStreamKey(STREAM_KEY));
+    }
+
+    /**
+     * 读取一批消息，先读取已到重试时间的消息，再读取新消息
+     * 还没到重试时间的消息留在未确认列表中，不会在每次轮询时重新处理
+     * @return
+     */
+    public List<MapRecord<String, Object, Object>> read() {
+        PaymentProperties.Notify notify = paymentProperties.getNotify();
+        Consumer consumer = Consumer.from(GROUP, this.consumer);
+        StreamReadOptions options = StreamReadOptions.empty().count(notify.getBatchSize());
+
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>(readDueRetries(notify.getBatchSize()));
+        List<MapRecord<String, Object, Object>> latest = stringRedisTemplate.opsForStream()
+                .read(consumer, options, StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed()));
+        if (latest != null) {
+            records.addAll(latest);
+        }
+        return records;
+    }
+
+    /**
+     * 读取已到重试时间的消息
+     * 用XCLAIM按id取回消息内容，同时刷新空闲时间，重试期间不会被其他节点当作宕机节点的消息认领；
+     * 已被确认（如其他节点认领后处理完成）的消息取不到，从重试中移除
+     */
+    private List<MapRecord<String, Object, Object>> readDueRetries(int count) {
+        Set<String> ids = stringRedisTemplate.opsForZSet()
+                .rangeByScore(retryKey, 0, System.currentTimeMillis(), 0, count);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MapRecord<String, Object, Object>> records = claim(
+                RedisStreamCommands.XClaimOptions.minIdle(Duration.ZERO).ids(ids.toArray(new String[0])));
+        Set<String> missing = new HashSet<>(ids);
+        records.forEach(record -> missing.remove(record.getId().getValue()));
+        if (!missing.isEmpty()) {
+            stringRedisTemplate.opsForZSet().remove(retryKey, missing.toArray());
+        }
+        return records;
+    }
+
+    /**
+     * 把消息认领到本消费者，返回认领到的消息
+     */
+    private List<MapRecord<String, Object, Object>> claim(RedisStreamCommands.XClaimOptions options) {
+        List<StringRecord> claimed = stringRedisTemplate.execute((RedisCallback<List<StringRecord>>) connection ->
+                ((StringRedisConnection) connection).xClaim(STREAM_KEY, GROUP, consumer, options));
+        if (claimed == null) {
+            return Collections.emptyList();
+        }
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>(claimed.size());
+        for (StringRecord record : claimed) {
+            records.add(StreamRecords.<String, Object, Object>mapBacked(new HashMap<>(record.getValue()))
+                    .withStreamKey(STREAM_KEY)
+                    .withId(record.getId()));
+        }
+        return records;
+    }
+
+    /**
+     * 认领其他消费者空闲超时的未确认消息，加入本节点的重试并立即重新处理
+     * 用XPENDING找出空闲超时的消息，再用带最小空闲时间的XCLAIM认领，多个节点同时认领同一条消息时只有一个能成功
+     * @return 认领的消息数
+     */
+    public long claimIdle() {
+        PaymentProperties.Notify notify = paymentProperties.getNotify();
+        long minIdle = notify.getClaimIdleTime();
+        List<String> idleIds = pending(null).stream()
+                .filter(message -> !consumer.equals(message.getConsumerName()))
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().toMillis() >= minIdle)
+                .map(PendingMessage::getIdAsString)
+                .collect(Collectors.toList());
+
+        long now = System.currentTimeMillis();
+        long claimed = 0;
+        for (int i = 0; i < idleIds.size(); i += notify.getBatchSize()) {
+            RedisStreamCommands.XClaimOptions options = RedisStreamCommands.XClaimOptions.minIdleMs(minIdle)
+                    .ids(idleIds.subList(i, Math.min(i + notify.getBatchSize(), idleIds.size())));
+            List<RecordId> claimedIds = stringRedisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                    ((StringRedisConnection) connection).xClaimJustId(STREAM_KEY, GROUP, consumer, options));
+            if (claimedIds == null) {
+                continue;
+            }
+            for (RecordId id : claimedIds) {
+                stringRedisTemplate.opsForZSet().add(retryKey, id.getValue(), now);
+            }
+            claimed += claimedIds.size();
+        }
+        return claimed;
+    }
+
+    /**
+     * 记录一次处理失败
+     * @param recordId
+     * @return 累计失败次数
+     */
+    public long recordFailure(RecordId recordId) {
+        Long attempts = stringRedisTemplate.opsForHash().increment(ATTEMPTS_KEY, recordId.getValue(), 1);
+        return attempts == null ? 1 : attempts;
+    }
+
+    /**
+     * 安排处理失败的消息延后重试，延迟按失败次数指数增长，不超过最大退避时间
+     * @param recordId
+     * @param attempts 累计失败次数
+     * @return 重试延迟(毫秒)
+     */
+    public long scheduleRetry(RecordId recordId, long attempts) {
+        PaymentProperties.Notify notify = paymentProperties.getNotify();
+        long shift = Math.min(Math.max(attempts - 1, 0), 20);
+        long delay = Math.min(notify.getRetryBackoff() << shift, notify.getMaxRetryBackoff());
+        stringRedisTemplate.opsForZSet().add(retryKey, recordId.getValue(), System.currentTimeMillis() + delay);
+        return delay;
+    }
+
+    /**
+     * 把消息转入死信stream，之后由调用方确认原消息
+     * @param record
+     * @param attempts 失败次数
+     * @param error 最后一次失败的原因
+     */
+    public void deadLetter(MapRecord<String, Object, Object> record, long attempts, String error) {
+        Map<String, String> message = new HashMap<>();
+        record.getValue().forEach((key, value) -> message.put(String.valueOf(key), String.valueOf(value)));
+        message.put(ATTEMPTS, String.valueOf(attempts));
+        message.put(ERROR, error == null ? "" : error);
+        stringRedisTemplate.opsForStream().add(StreamRecords.string(message).withStreamKey(DEAD_LETTER_KEY));
+    }
+
+    /**
+     * 确认已处理的消息，从收件箱删除，并清除失败次数和重试
+     * 只删除已确认的消息，不按长度裁剪，裁剪可能删掉还未处理或未确认的回调
+     * @param recordIds
+     */
+    public void acknowledge(List<RecordId> recordIds) {
+        if (recordIds.isEmpty()) {
+            return;
+        }
+        RecordId[] acknowledged = recordIds.toArray(new RecordId[0]);
+        stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, acknowledged);
+        stringRedisTemplate.opsForStream().delete(STREAM_KEY, acknowledged);
+        Object[] ids = recordIds.stream().map(RecordId::getValue).toArray();
+        stringRedisTemplate.opsForHash().delete(ATTEMPTS_KEY, ids);
+        stringRedisTemplate.opsForZSet().remove(retryKey, ids);
+    }
+}
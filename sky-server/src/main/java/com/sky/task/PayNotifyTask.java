@@ -0,0 +1,148 @@
+package com.sky.task;
+
+import com.sky.properties.PaymentProperties;
+import com.sky.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付回调处理任务
+ * 批量读取支付回调收件箱，修改订单状态、来单提醒，处理成功后确认消息
+ * 使用独立的线程轮询，不受其他定时任务执行时间的影响
+ */
+@Component
+@Slf4j
+public class PayNotifyTask {
+
+    @Autowired
+    private PayNotifyInbox payNotifyInbox;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private PaymentProperties paymentProperties;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    /**
+     * 上次认领空闲消息的时间
+     */
+    private long lastClaimTime;
+
+    /**
+     * 启动完成后开始轮询收件箱
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pay-notify-");
+        threadFactory.setDaemon(true);
+        executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        executor.scheduleWithFixedDelay(this::poll, 0,
+                paymentProperties.getNotify().getPollInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 轮询一次，异常不能抛出，否则后续轮询会被取消
+     */
+    private void poll() {
+        try {
+            claimIdle();
+            processPayNotify();
+        } catch (Exception e) {
+            log.error("【支付回调】读取收件箱失败", e);
+        }
+    }
+
+    /**
+     * 定期认领宕机节点留下的未确认消息
+     */
+    void claimIdle() {
+        long now = System.currentTimeMillis();
+        if (now - lastClaimTime < paymentProperties.getNotify().getClaimInterval()) {
+            return;
+        }
+        lastClaimTime = now;
+        try {
+            long claimed = payNotifyInbox.claimIdle();
+            if (claimed > 0) {
+                log.info("【支付回调】认领其他节点未确认的消息{}条", claimed);
+            }
+        } catch (Exception e) {
+            log.warn("【支付回调】认领未确认的消息失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理一批支付回调
+     * 整批待付款订单在一个事务中更新，其余回调（重复回调、已取消后才支付等）或整批失败时逐条处理
+     * 处理失败的消息不确认，按退避时间延后重试，达到最大次数后转入死信并确认
+     */
+    public void processPayNotify() {
+        List<MapRecord<String, Object, Object>> records = payNotifyInbox.read();
+        if (records.isEmpty()) {
+            return;
+        }
+
+        List<String> outTradeNos = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            outTradeNos.add((String) record.getValue().get(PayNotifyInbox.OUT_TRADE_NO));
+        }
+        Set<String> remaining;
+        try {
+            remaining = new HashSet<>(orderService.paySuccessBatch(outTradeNos));
+        } catch (Exception e) {
+            log.error("【支付回调】批量处理失败，逐条处理", e);
+            remaining = new HashSet<>(outTradeNos);
+        }
+
+        int maxAttempts = paymentProperties.getNotify().getMaxAttempts();
+        List<RecordId> processed = new ArrayList<>(records.size());
+        int failed = 0;
+        for (MapRecord<String, Object, Object> record : records) {
+            String outTradeNo = (String) record.getValue().get(PayNotifyInbox.OUT_TRADE_NO);
+            if (!remaining.contains(outTradeNo)) {
+                processed.add(record.getId());
+                continue;
+            }
+            try {
+                //重复处理时条件更新不会生效，可以安全重试
+                orderService.paySuccess(outTradeNo);
+                processed.add(record.getId());
+            } catch (Exception e) {
+                failed++;
+                long attempts = payNotifyInbox.recordFailure(record.getId());
+                if (attempts >= maxAttempts) {
+                    payNotifyInbox.deadLetter(record, attempts, e.getMessage());
+                    processed.add(record.getId());
+                    log.error("【支付回调】处理失败{}次，转入死信，订单号：{}", attempts, outTradeNo, e);
+                } else {
+                    //未确认的消息到重试时间后重新处理
+                    long delay = payNotifyInbox.scheduleRetry(record.getId(), attempts);
+                    log.error("【支付回调】第{}次处理失败，{}毫秒后重试，订单号：{}", attempts, delay, outTradeNo, e);
+                }
+            }
+        }
+        payNotifyInbox.acknowledge(processed);
+        log.info("【支付回调】已处理{}条，失败{}条", records.size() - failed, failed);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
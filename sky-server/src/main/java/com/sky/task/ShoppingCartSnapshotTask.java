@@ -0,0 +1,68 @@
+package com.sky.task;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.impl.RedisShoppingCartServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 购物车快照定时任务
+ * 购物车存储在redis时，定时把有变动的购物车写回shopping_cart表
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "storage", havingValue = "redis")
+public class ShoppingCartSnapshotTask {
+
+    @Autowired
+    private RedisShoppingCartServiceImpl redisShoppingCartService;
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 快照有变动的购物车
+     */
+    @Scheduled(fixedDelayString = "${sky.shopping-cart.snapshot-interval:60000}")
+    public void snapshot() {
+        if (!shoppingCartProperties.isSnapshotEnabled()) {
+            return;
+        }
+
+        List<Long> userIds = redisShoppingCartService.dirtyUsers(shoppingCartProperties.getSnapshotBatchSize());
+        int count = 0;
+        for (Long userId : userIds) {
+            //先移除标记再读取购物车，读取之后的修改会重新标记，下次再快照
+            redisShoppingCartService.clearDirty(userId);
+            try {
+                List<ShoppingCart> shoppingCartList = redisShoppingCartService.listByUserId(userId);
+                transactionTemplate.executeWithoutResult(status -> {
+                    shoppingCartMapper.deleteByUserId(userId);
+                    if (shoppingCartList.size() > 0) {
+                        shoppingCartMapper.insertBatch(shoppingCartList);
+                    }
+                });
+                count++;
+            } catch (Exception e) {
+                //快照失败时重新标记，下次重试
+                redisShoppingCartService.markDirty(userId);
+                log.error("【购物车快照】快照失败，用户ID：{}", userId, e);
+            }
+        }
+
+        if (count > 0) {
+            log.info("【购物车快照】已快照{}个用户的购物车", count);
+        }
+    }
+}
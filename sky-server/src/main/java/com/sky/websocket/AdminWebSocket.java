@@ -1,13 +1,15 @@
 package com.sky.websocket;
 
-import com.alibaba.fastjson.JSON;
+import com.sky.websocket.event.NewOrderBatchEvent;
+import com.sky.websocket.event.NewOrderEvent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
  * 商家端WebSocket服务
@@ -17,55 +19,100 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @ServerEndpoint("/ws/admin/{adminId}")
 public class AdminWebSocket {
-    
+
+    /**
+     * 存储商家连接 adminId -> 该商家在本节点上的所有Session
+     */
+    private static final WebSocketSessionRegistry adminSessions = new WebSocketSessionRegistry();
+
+    /**
+     * 集群推送总线
+     */
+    private static WebSocketPushBus pushBus;
+
     /**
-     * 存储商家连接 adminId -> Session
+     * 消息发送器
      */
-    private static ConcurrentHashMap<Long, Session> adminSessions = new ConcurrentHashMap<>();
-    
+    private static WebSocketSender sender;
+
+    /**
+     * 订阅推送给商家的事件
+     */
+    @Autowired
+    public void setEventDispatcher(WebSocketEventDispatcher eventDispatcher) {
+        eventDispatcher.subscribe(NewOrderEvent.class, AdminWebSocket::sendNewOrder);
+    }
+
+    /**
+     * 来单提醒合并
+     */
+    private static NewOrderCoalescer newOrderCoalescer;
+
+    @Autowired
+    public void setNewOrderCoalescer(NewOrderCoalescer newOrderCoalescer) {
+        AdminWebSocket.newOrderCoalescer = newOrderCoalescer;
+    }
+
+    @Autowired
+    public void setPushBus(WebSocketPushBus pushBus) {
+        AdminWebSocket.pushBus = pushBus;
+    }
+
+    @Autowired
+    public void setSender(WebSocketSender sender) {
+        AdminWebSocket.sender = sender;
+    }
+
     /**
      * 连接建立成功调用
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("adminId") Long adminId) {
-        adminSessions.put(adminId, session);
+        adminSessions.add(adminId, session);
+        WebSocketHeartbeat.touch(session);
         log.info("【WebSocket-商家】商家{}建立连接，当前在线商家数：{}", adminId, adminSessions.size());
-        
+
         // 发送连接成功消息
         WebSocketMessage message = WebSocketMessage.builder()
                 .type(WebSocketMessage.TYPE_CONNECTED)
                 .message("连接成功")
                 .timestamp(System.currentTimeMillis())
                 .build();
-        sendToAdmin(adminId, message);
+        send(session, WebSocketCodec.encode(message));
     }
-    
+
     /**
      * 连接关闭调用
      */
     @OnClose
-    public void onClose(@PathParam("adminId") Long adminId) {
-        adminSessions.remove(adminId);
+    public void onClose(Session session, @PathParam("adminId") Long adminId) {
+        adminSessions.remove(adminId, session);
         log.info("【WebSocket-商家】商家{}断开连接，当前在线商家数：{}", adminId, adminSessions.size());
     }
-    
+
     /**
      * 收到客户端消息
      */
     @OnMessage
-    public void onMessage(String message, @PathParam("adminId") Long adminId) {
-        log.info("【WebSocket-商家】收到商家{}的消息：{}", adminId, message);
-        
-        // 处理心跳
+    public void onMessage(String message, Session session, @PathParam("adminId") Long adminId) {
+        log.debug("【WebSocket-商家】收到商家{}的消息：{}", adminId, message);
+
+        WebSocketHeartbeat.touch(session);
+
+        // 处理客户端心跳，只回复发送心跳的连接
         if ("ping".equals(message)) {
-            WebSocketMessage pong = WebSocketMessage.builder()
-                    .type(WebSocketMessage.TYPE_PONG)
-                    .timestamp(System.currentTimeMillis())
-                    .build();
-            sendToAdmin(adminId, pong);
+            send(session, "{\"timestamp\":" + System.currentTimeMillis() + ",\"type\":\"" + WebSocketMessage.TYPE_PONG + "\"}");
         }
     }
-    
+
+    /**
+     * 收到服务端ping帧的响应
+     */
+    @OnMessage
+    public void onPong(PongMessage pong, Session session) {
+        WebSocketHeartbeat.touch(session);
+    }
+
     /**
      * 发生错误
      */
@@ -73,62 +120,106 @@ public class AdminWebSocket {
     public void onError(Session session, Throwable error) {
         log.error("【WebSocket-商家】发生错误", error);
     }
-    
+
     /**
-     * 推送消息给指定商家
+     * 推送消息给指定商家，商家在任意节点上的所有连接都会收到
      */
     public static void sendToAdmin(Long adminId, WebSocketMessage message) {
-        Session session = adminSessions.get(adminId);
-        if (session != null && session.isOpen()) {
-            try {
-                String jsonMessage = JSON.toJSONString(message);
-                session.getAsyncRemote().sendText(jsonMessage);
-                log.info("【WebSocket-商家】推送消息给商家{}：{}", adminId, message.getType());
-            } catch (Exception e) {
-                log.error("【WebSocket-商家】推送消息失败，商家ID：{}", adminId, e);
-            }
-        } else {
-            log.warn("【WebSocket-商家】商家{}不在线，无法推送消息", adminId);
-        }
+        publish(adminId, WebSocketCodec.encode(message));
+        log.debug("【WebSocket-商家】推送消息给商家{}：{}", adminId, message.getType());
     }
-    
+
     /**
      * 推送来单提醒给所有在线商家
+     * 开启合并时先加入合并窗口，窗口到期后统一推送
      * @param orderData 订单数据
      */
     public static void sendNewOrder(Object orderData) {
+        if (newOrderCoalescer != null && newOrderCoalescer.isEnabled()) {
+            newOrderCoalescer.add(orderData);
+        } else {
+            publishNewOrder(orderData);
+        }
+    }
+
+    /**
+     * 立即推送一条来单提醒
+     * @param orderData 订单数据
+     */
+    static void publishNewOrder(Object orderData) {
         WebSocketMessage message = WebSocketMessage.builder()
                 .type(WebSocketMessage.TYPE_NEW_ORDER)
                 .data(orderData)
                 .message("您有新的订单")
                 .timestamp(System.currentTimeMillis())
                 .build();
-        
-        String jsonMessage = JSON.toJSONString(message);
-        
-        // 广播给所有在线商家
-        adminSessions.forEach((adminId, session) -> {
-            if (session.isOpen()) {
-                try {
-                    session.getAsyncRemote().sendText(jsonMessage);
-                    log.info("【WebSocket-商家】推送来单提醒给商家{}", adminId);
-                } catch (Exception e) {
-                    log.error("【WebSocket-商家】推送来单提醒失败，商家ID：{}", adminId, e);
-                }
-            }
-        });
-    }
-    
-    /**
-     * 检查商家是否在线
+
+        // 广播给所有节点上的在线商家
+        publish(null, WebSocketCodec.encode(message));
+        log.debug("【WebSocket-商家】推送来单提醒");
+    }
+
+    /**
+     * 推送合并的来单提醒
+     * @param orders 窗口内的订单数据
+     */
+    static void publishNewOrderBatch(List<Object> orders) {
+        WebSocketMessage message = WebSocketMessage.builder()
+                .type(WebSocketMessage.TYPE_NEW_ORDER_BATCH)
+                .data(NewOrderBatchEvent.builder().count(orders.size()).orders(orders).build())
+                .message("您有" + orders.size() + "个新的订单")
+                .timestamp(System.currentTimeMillis())
+                .build();
+
+        publish(null, WebSocketCodec.encode(message));
+        log.debug("【WebSocket-商家】推送合并的来单提醒，订单数：{}", orders.size());
+    }
+
+    private static void publish(Long adminId, String jsonMessage) {
+        if (pushBus != null) {
+            pushBus.publish(WebSocketPushBus.TARGET_ADMIN, adminId, jsonMessage);
+        } else {
+            deliver(adminId, jsonMessage);
+        }
+    }
+
+    /**
+     * 推送消息给本节点上的商家连接
+     * @param adminId 商家ID，为null时推送给所有商家
+     * @param jsonMessage 消息内容
+     */
+    static void deliver(Long adminId, String jsonMessage) {
+        if (adminId == null) {
+            adminSessions.forEach((id, session) -> send(session, jsonMessage));
+        } else {
+            adminSessions.get(adminId).forEach(session -> send(session, jsonMessage));
+        }
+    }
+
+    private static void send(Session session, String jsonMessage) {
+        if (sender != null) {
+            sender.send(session, jsonMessage);
+        } else if (session.isOpen()) {
+            session.getAsyncRemote().sendText(jsonMessage);
+        }
+    }
+
+    /**
+     * 本节点上的连接，供服务端心跳检查
+     */
+    static WebSocketSessionRegistry sessions() {
+        return adminSessions;
+    }
+
+    /**
+     * 检查商家在本节点上是否在线
      */
     public static boolean isOnline(Long adminId) {
-        Session session = adminSessions.get(adminId);
-        return session != null && session.isOpen();
+        return adminSessions.isOnline(adminId);
     }
-    
+
     /**
-     * 获取在线商家数
+     * 获取本节点在线商家数
      */
     public static int getOnlineCount() {
         return adminSessions.size();
@@ -0,0 +1,140 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 来单提醒合并
+ * 高峰期把一个窗口内的新订单合并为一条消息推送给商家，避免商家端逐条刷新、播放提示音
+ * 窗口保存在redis中，所有节点共用一个窗口：打开窗口的节点负责到期后推送，其他节点的新订单只加入窗口
+ * 负责推送的节点宕机时，窗口锁过期后由下一个新订单重新打开窗口，窗口内未推送的订单一并推送
+ */
+@Component
+@Slf4j
+public class NewOrderCoalescer {
+
+    static final String WINDOW_KEY = "websocket_new_order_window";
+    static final String LOCK_KEY = "websocket_new_order_window_lock";
+
+    /**
+     * 加入窗口，KEYS[1]=窗口内的订单，KEYS[2]=窗口锁，ARGV[1]=订单数据，ARGV[2]=窗口锁过期时间(毫秒)
+     * 返回1表示打开了新窗口，由当前节点负责推送
+     */
+    static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('rpush', KEYS[1], ARGV[1]) " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "if redis.call('set', KEYS[2], '1', 'NX', 'PX', ARGV[2]) then return 1 end " +
+            "return 0",
+            Long.class);
+
+    /**
+     * 关闭窗口，取出窗口内的所有订单并释放窗口锁，之后的新订单会打开新窗口
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> FLUSH_SCRIPT = new DefaultRedisScript<>(
+            "local orders = redis.call('lrange', KEYS[1], 0, -1) " +
+            "redis.call('del', KEYS[1], KEYS[2]) " +
+            "return orders",
+            List.class);
+
+    private static final List<String> KEYS = Arrays.asList(WINDOW_KEY, LOCK_KEY);
+
+    private final WebSocketProperties webSocketProperties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final DistributionSummary windowSize;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    public NewOrderCoalescer(WebSocketProperties webSocketProperties, StringRedisTemplate stringRedisTemplate,
+                             MeterRegistry meterRegistry) {
+        this.webSocketProperties = webSocketProperties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.windowSize = DistributionSummary.builder("sky.websocket.new_order.window")
+                .description("每个合并窗口内的新订单数")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ws-new-order-");
+        threadFactory.setDaemon(true);
+        this.executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+    }
+
+    /**
+     * 是否开启合并
+     * @return
+     */
+    public boolean isEnabled() {
+        return webSocketProperties.getNewOrderCoalesceWindow() > 0;
+    }
+
+    /**
+     * 加入当前窗口，打开了新窗口时由本节点在窗口到期后合并推送
+     * redis不可用时不合并，直接推送
+     * @param orderData
+     */
+    public void add(Object orderData) {
+        long window = webSocketProperties.getNewOrderCoalesceWindow();
+        Long opened;
+        try {
+            opened = stringRedisTemplate.execute(ADD_SCRIPT, KEYS,
+                    WebSocketCodec.encodeData(orderData), String.valueOf(lockTtl(window)));
+        } catch (Exception e) {
+            log.error("【WebSocket-商家】加入来单合并窗口失败，直接推送", e);
+            AdminWebSocket.publishNewOrder(orderData);
+            return;
+        }
+        if (opened != null && opened == 1) {
+            executor.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void flush() {
+        List<String> window;
+        try {
+            window = stringRedisTemplate.execute(FLUSH_SCRIPT, KEYS);
+        } catch (Exception e) {
+            //窗口锁过期后由下一个新订单重新打开窗口
+            log.error("【WebSocket-商家】推送来单合并窗口失败", e);
+            return;
+        }
+        if (window == null || window.isEmpty()) {
+            return;
+        }
+        List<Object> orders = new ArrayList<>(window.size());
+        window.forEach(order -> orders.add(JSON.parse(order)));
+        windowSize.record(orders.size());
+        if (orders.size() == 1) {
+            AdminWebSocket.publishNewOrder(orders.get(0));
+        } else {
+            AdminWebSocket.publishNewOrderBatch(orders);
+        }
+    }
+
+    /**
+     * 窗口锁的过期时间，留出推送节点调度延迟的余量，超过后视为推送节点已宕机
+     */
+    private static long lockTtl(long window) {
+        return window * 2 + 1000;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+}
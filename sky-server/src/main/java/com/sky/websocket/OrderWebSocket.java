@@ -1,13 +1,16 @@
 package com.sky.websocket;
 
-import com.alibaba.fastjson.JSON;
+import com.sky.websocket.event.OrderCancelledEvent;
+import com.sky.websocket.event.PaymentSucceededEvent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * 用户端WebSocket服务
@@ -17,61 +20,144 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @ServerEndpoint("/ws/order/{userId}")
 public class OrderWebSocket {
-    
+
     /**
-     * 存储用户连接 userId -> Session
-     * 使用ConcurrentHashMap保证线程安全
+     * 存储用户连接 userId -> 该用户在本节点上的所有Session
+     * 同一用户可以在多个设备上同时连接
      */
-    private static ConcurrentHashMap<Long, Session> userSessions = new ConcurrentHashMap<>();
-    
+    private static final WebSocketSessionRegistry userSessions = new WebSocketSessionRegistry();
+
+    /**
+     * 集群推送总线，连接可能在任意节点上，推送消息通过它广播到所有节点
+     * 每个连接都会创建一个端点实例，因此通过静态变量持有spring容器中的bean
+     */
+    private static WebSocketPushBus pushBus;
+
+    /**
+     * 消息发送器
+     */
+    private static WebSocketSender sender;
+
+    /**
+     * 离线消息
+     */
+    private static WebSocketOutbox outbox;
+
+    /**
+     * 订阅推送给用户的事件
+     */
+    @Autowired
+    public void setEventDispatcher(WebSocketEventDispatcher eventDispatcher) {
+        eventDispatcher.subscribe(PaymentSucceededEvent.class,
+                event -> sendPaymentSuccess(event.getUserId(), event.getOrderNumber(), event));
+        eventDispatcher.subscribe(OrderCancelledEvent.class, event -> sendOrderCancel(event.getUserId(), event));
+    }
+
+    @Autowired
+    public void setOutbox(WebSocketOutbox outbox) {
+        OrderWebSocket.outbox = outbox;
+    }
+
+    @Autowired
+    public void setPushBus(WebSocketPushBus pushBus) {
+        OrderWebSocket.pushBus = pushBus;
+    }
+
+    @Autowired
+    public void setSender(WebSocketSender sender) {
+        OrderWebSocket.sender = sender;
+    }
+
     /**
      * 连接建立成功调用
+     * 握手时WebSocketHandshakeFilter已校验令牌，并确认路径中的userId是令牌对应的用户
+     * 客户端通过lastSeq参数携带收到的最后一个消息序号，建立连接后补发之后的消息
      * @param session WebSocket会话
      * @param userId 用户ID
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("userId") Long userId) {
-        userSessions.put(userId, session);
+        userSessions.add(userId, session);
+        WebSocketHeartbeat.touch(session);
         log.info("【WebSocket】用户{}建立连接，当前在线人数：{}", userId, userSessions.size());
-        
-        // 发送连接成功消息
+
+        // 发送连接成功消息，携带当前的消息序号
         WebSocketMessage message = WebSocketMessage.builder()
                 .type(WebSocketMessage.TYPE_CONNECTED)
                 .message("连接成功")
                 .timestamp(System.currentTimeMillis())
                 .build();
-        sendToUser(userId, message);
+        if (outbox == null) {
+            send(session, WebSocketCodec.encode(message));
+            return;
+        }
+        try {
+            message.setSeq(outbox.currentSeq(userId));
+            send(session, WebSocketCodec.encode(message));
+            replay(session, userId);
+        } catch (Exception e) {
+            log.error("【WebSocket】补发离线消息失败，用户ID：{}", userId, e);
+        }
     }
-    
+
+    /**
+     * 补发客户端最后收到的序号之后的消息
+     */
+    private void replay(Session session, Long userId) {
+        List<String> lastSeqParam = session.getRequestParameterMap().get("lastSeq");
+        if (lastSeqParam == null || lastSeqParam.isEmpty()) {
+            return;
+        }
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(lastSeqParam.get(0));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        List<String> messages = outbox.listAfter(userId, lastSeq);
+        messages.forEach(jsonMessage -> send(session, jsonMessage));
+        if (messages.size() > 0) {
+            log.info("【WebSocket】补发用户{}的离线消息{}条", userId, messages.size());
+        }
+    }
+
     /**
      * 连接关闭调用
+     * @param session WebSocket会话
      * @param userId 用户ID
      */
     @OnClose
-    public void onClose(@PathParam("userId") Long userId) {
-        userSessions.remove(userId);
+    public void onClose(Session session, @PathParam("userId") Long userId) {
+        userSessions.remove(userId, session);
         log.info("【WebSocket】用户{}断开连接，当前在线人数：{}", userId, userSessions.size());
     }
-    
+
     /**
      * 收到客户端消息
      * @param message 消息内容
+     * @param session WebSocket会话
      * @param userId 用户ID
      */
     @OnMessage
-    public void onMessage(String message, @PathParam("userId") Long userId) {
-        log.info("【WebSocket】收到用户{}的消息：{}", userId, message);
-        
-        // 处理心跳
+    public void onMessage(String message, Session session, @PathParam("userId") Long userId) {
+        log.debug("【WebSocket】收到用户{}的消息：{}", userId, message);
+
+        WebSocketHeartbeat.touch(session);
+
+        // 处理客户端心跳，只回复发送心跳的连接
         if ("ping".equals(message)) {
-            WebSocketMessage pong = WebSocketMessage.builder()
-                    .type(WebSocketMessage.TYPE_PONG)
-                    .timestamp(System.currentTimeMillis())
-                    .build();
-            sendToUser(userId, pong);
+            send(session, "{\"timestamp\":" + System.currentTimeMillis() + ",\"type\":\"" + WebSocketMessage.TYPE_PONG + "\"}");
         }
     }
-    
+
+    /**
+     * 收到服务端ping帧的响应
+     */
+    @OnMessage
+    public void onPong(PongMessage pong, Session session) {
+        WebSocketHeartbeat.touch(session);
+    }
+
     /**
      * 发生错误
      * @param session WebSocket会话
@@ -81,27 +167,61 @@ public class OrderWebSocket {
     public void onError(Session session, Throwable error) {
         log.error("【WebSocket】发生错误", error);
     }
-    
+
     /**
-     * 推送消息给指定用户
+     * 推送消息给指定用户，用户在任意节点上的所有连接都会收到，并保存为离线消息
      * @param userId 用户ID
      * @param message 消息对象
      */
     public static void sendToUser(Long userId, WebSocketMessage message) {
-        Session session = userSessions.get(userId);
-        if (session != null && session.isOpen()) {
+        // 保存到离线消息，用户不在线或推送失败时重连后补发
+        long seq = 0;
+        if (outbox != null) {
+            try {
+                seq = outbox.nextSeq(userId);
+                message.setSeq(seq);
+            } catch (Exception e) {
+                log.error("【WebSocket】生成消息序号失败，用户ID：{}", userId, e);
+            }
+        }
+        String jsonMessage = WebSocketCodec.encode(message);
+        if (seq > 0) {
             try {
-                String jsonMessage = JSON.toJSONString(message);
-                session.getAsyncRemote().sendText(jsonMessage);
-                log.info("【WebSocket】推送消息给用户{}：{}", userId, message.getType());
+                outbox.save(userId, seq, jsonMessage);
             } catch (Exception e) {
-                log.error("【WebSocket】推送消息失败，用户ID：{}", userId, e);
+                log.error("【WebSocket】保存离线消息失败，用户ID：{}", userId, e);
             }
+        }
+        if (pushBus != null) {
+            pushBus.publish(WebSocketPushBus.TARGET_USER, userId, jsonMessage);
         } else {
-            log.warn("【WebSocket】用户{}不在线，无法推送消息", userId);
+            deliver(userId, jsonMessage);
+        }
+        log.debug("【WebSocket】推送消息给用户{}：{}", userId, message.getType());
+    }
+
+    /**
+     * 推送消息给本节点上指定用户的所有连接
+     * @param userId 用户ID
+     * @param jsonMessage 消息内容
+     */
+    static void deliver(Long userId, String jsonMessage) {
+        Set<Session> sessions = userSessions.get(userId);
+        if (sessions.isEmpty()) {
+            log.debug("【WebSocket】用户{}不在本节点上，跳过推送", userId);
+            return;
         }
+        sessions.forEach(session -> send(session, jsonMessage));
     }
-    
+
+    private static void send(Session session, String jsonMessage) {
+        if (sender != null) {
+            sender.send(session, jsonMessage);
+        } else if (session.isOpen()) {
+            session.getAsyncRemote().sendText(jsonMessage);
+        }
+    }
+
     /**
      * 推送支付成功消息
      * @param userId 用户ID
@@ -116,9 +236,9 @@ public class OrderWebSocket {
                 .timestamp(System.currentTimeMillis())
                 .build();
         sendToUser(userId, message);
-        log.info("【WebSocket】推送支付成功消息，用户ID：{}，订单号：{}", userId, orderNumber);
+        log.debug("【WebSocket】推送支付成功消息，用户ID：{}，订单号：{}", userId, orderNumber);
     }
-    
+
     /**
      * 推送订单状态变更消息
      * @param userId 用户ID
@@ -133,7 +253,7 @@ public class OrderWebSocket {
                 .build();
         sendToUser(userId, message);
     }
-    
+
     /**
      * 推送订单取消消息
      * @param userId 用户ID
@@ -148,19 +268,25 @@ public class OrderWebSocket {
                 .build();
         sendToUser(userId, message);
     }
-    
+
+    /**
+     * 本节点上的连接，供服务端心跳检查
+     */
+    static WebSocketSessionRegistry sessions() {
+        return userSessions;
+    }
+
     /**
-     * 检查用户是否在线
+     * 检查用户在本节点上是否在线
      * @param userId 用户ID
      * @return 是否在线
      */
     public static boolean isOnline(Long userId) {
-        Session session = userSessions.get(userId);
-        return session != null && session.isOpen();
+        return userSessions.isOnline(userId);
     }
-    
+
     /**
-     * 获取在线人数
+     * 获取本节点在线人数
      * @return 在线人数
      */
     public static int getOnlineCount() {
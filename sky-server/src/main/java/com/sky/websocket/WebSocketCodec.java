@@ -0,0 +1,46 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.sky.websocket.event.NewOrderBatchEvent;
+import com.sky.websocket.event.NewOrderEvent;
+import com.sky.websocket.event.OrderCancelledEvent;
+import com.sky.websocket.event.PaymentSucceededEvent;
+
+/**
+ * WebSocket消息编码
+ * 使用独立的序列化配置，启动时预先生成消息和事件类型的序列化器，推送时不再反射解析类型
+ */
+public final class WebSocketCodec {
+
+    private static final SerializeConfig CONFIG = new SerializeConfig();
+
+    static {
+        Class<?>[] types = {WebSocketMessage.class, PaymentSucceededEvent.class, OrderCancelledEvent.class,
+                NewOrderEvent.class, NewOrderBatchEvent.class};
+        for (Class<?> type : types) {
+            CONFIG.getObjectWriter(type);
+        }
+    }
+
+    private WebSocketCodec() {
+    }
+
+    /**
+     * 编码为JSON文本
+     * @param message
+     * @return
+     */
+    public static String encode(WebSocketMessage message) {
+        return JSON.toJSONString(message, CONFIG);
+    }
+
+    /**
+     * 编码消息中携带的数据，编码结果与放在消息中编码时一致
+     * @param data
+     * @return
+     */
+    public static String encodeData(Object data) {
+        return JSON.toJSONString(data, CONFIG);
+    }
+}
@@ -0,0 +1,50 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * WebSocket事件分发器
+ * 业务代码只发布类型化的事件，由订阅了该事件类型的WebSocket端点负责推送
+ */
+@Component
+@Slf4j
+public class WebSocketEventDispatcher {
+
+    private final Map<Class<?>, List<Consumer<Object>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅事件
+     * @param eventType 事件类型
+     * @param subscriber 处理方法
+     */
+    public <E> void subscribe(Class<E> eventType, Consumer<E> subscriber) {
+        subscribers.computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>())
+                .add(event -> subscriber.accept(eventType.cast(event)));
+    }
+
+    /**
+     * 发布事件，某个订阅者处理失败不影响其他订阅者
+     * @param event
+     */
+    public void dispatch(Object event) {
+        List<Consumer<Object>> list = subscribers.get(event.getClass());
+        if (list == null) {
+            log.warn("【WebSocket事件】没有订阅者：{}", event.getClass().getSimpleName());
+            return;
+        }
+        for (Consumer<Object> subscriber : list) {
+            try {
+                subscriber.accept(event);
+            } catch (Exception e) {
+                log.error("【WebSocket事件】处理失败：{}", event.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
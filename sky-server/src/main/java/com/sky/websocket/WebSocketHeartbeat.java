@@ -0,0 +1,180 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket服务端心跳
+ * 由一个共享的调度线程定时检查所有连接，向连接发送协议层ping帧，关闭超时未收到任何消息的连接
+ * tomcat的sendPing和close是阻塞写，对端失联时会一直阻塞到发送超时，所以ping和关闭交给单独的线程池执行，
+ * 并把连接的阻塞发送超时设置为pingTimeout，发送失败的连接立即关闭，不会拖慢检查线程
+ */
+@Component
+@Slf4j
+public class WebSocketHeartbeat {
+
+    private static final String LAST_SEEN = "sky.lastSeen";
+
+    private static final String PINGING = "sky.pinging";
+
+    /**
+     * tomcat阻塞发送（ping、close）超时时间的连接属性，默认20秒
+     */
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final WebSocketProperties webSocketProperties;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * 发送ping帧和关闭连接的线程池，每个连接同一时间最多一个ping，队列长度不超过连接数
+     */
+    private final ThreadPoolExecutor pingExecutor;
+
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicInteger idleSessions = new AtomicInteger();
+    private final Counter evictedCounter;
+
+    public WebSocketHeartbeat(WebSocketProperties webSocketProperties, MeterRegistry meterRegistry) {
+        this.webSocketProperties = webSocketProperties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ws-heartbeat-");
+        threadFactory.setDaemon(true);
+        this.executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        CustomizableThreadFactory pingThreadFactory = new CustomizableThreadFactory("ws-ping-");
+        pingThreadFactory.setDaemon(true);
+        int pingPoolSize = webSocketProperties.getPingPoolSize();
+        this.pingExecutor = new ThreadPoolExecutor(pingPoolSize, pingPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), pingThreadFactory);
+
+        Gauge.builder("sky.websocket.sessions", activeSessions, AtomicInteger::get)
+                .tag("state", "active")
+                .register(meterRegistry);
+        Gauge.builder("sky.websocket.sessions", idleSessions, AtomicInteger::get)
+                .tag("state", "idle")
+                .register(meterRegistry);
+        this.evictedCounter = meterRegistry.counter("sky.websocket.evicted");
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = webSocketProperties.getPingInterval();
+        executor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+        pingExecutor.shutdownNow();
+    }
+
+    /**
+     * 记录连接最近一次收到消息的时间
+     * @param session
+     */
+    public static void touch(Session session) {
+        ((AtomicLong) session.getUserProperties().computeIfAbsent(LAST_SEEN, k -> new AtomicLong()))
+                .set(System.currentTimeMillis());
+    }
+
+    /**
+     * 检查所有连接：超时的关闭并移除，其余发送ping帧
+     */
+    private void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            int[] counts = new int[2];
+            check(OrderWebSocket.sessions(), now, counts);
+            check(AdminWebSocket.sessions(), now, counts);
+            activeSessions.set(counts[0]);
+            idleSessions.set(counts[1]);
+        } catch (Exception e) {
+            log.error("【WebSocket心跳】检查连接失败", e);
+        }
+    }
+
+    void check(WebSocketSessionRegistry registry, long now, int[] counts) {
+        long idleTimeout = webSocketProperties.getIdleTimeout();
+        long pingInterval = webSocketProperties.getPingInterval();
+        List<Map.Entry<Long, Session>> evicted = new ArrayList<>();
+
+        registry.forEach((id, session) -> {
+            AtomicLong lastSeen = (AtomicLong) session.getUserProperties().get(LAST_SEEN);
+            long idle = lastSeen == null ? 0 : now - lastSeen.get();
+            if (!session.isOpen() || idle > idleTimeout) {
+                evicted.add(new AbstractMap.SimpleEntry<>(id, session));
+                return;
+            }
+            counts[0]++;
+            if (idle > pingInterval) {
+                counts[1]++;
+            }
+            ping(session);
+        });
+
+        for (Map.Entry<Long, Session> entry : evicted) {
+            Session session = entry.getValue();
+            registry.remove(entry.getKey(), session);
+            evictedCounter.increment();
+            pingExecutor.execute(() -> close(session, "idle timeout"));
+        }
+        if (!evicted.isEmpty()) {
+            log.info("【WebSocket心跳】关闭{}个空闲连接", evicted.size());
+        }
+    }
+
+    /**
+     * 在ping线程池中发送ping帧，上一个ping还没完成的连接跳过本次
+     * 发送失败（包括超时）说明对端已失联，立即关闭连接，下次检查时移除
+     */
+    private void ping(Session session) {
+        AtomicBoolean pinging = (AtomicBoolean) session.getUserProperties()
+                .computeIfAbsent(PINGING, k -> new AtomicBoolean());
+        if (!pinging.compareAndSet(false, true)) {
+            return;
+        }
+        pingExecutor.execute(() -> {
+            try {
+                session.getUserProperties().put(BLOCKING_SEND_TIMEOUT, webSocketProperties.getPingTimeout());
+                session.getAsyncRemote().sendPing(EMPTY.duplicate());
+            } catch (Exception e) {
+                log.debug("【WebSocket心跳】连接{}发送ping失败，关闭连接：{}", session.getId(), e.getMessage());
+                close(session, "ping failed");
+            } finally {
+                pinging.set(false);
+            }
+        });
+    }
+
+    private void close(Session session, String reason) {
+        try {
+            session.getUserProperties().put(BLOCKING_SEND_TIMEOUT, webSocketProperties.getPingTimeout());
+            session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, reason));
+        } catch (Exception e) {
+            log.debug("【WebSocket心跳】关闭连接{}失败：{}", session.getId(), e.getMessage());
+        }
+    }
+}
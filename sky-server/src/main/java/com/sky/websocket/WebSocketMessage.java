@@ -38,6 +38,11 @@ public class WebSocketMessage implements Serializable {
      * 消息内容描述
      */
     private String message;
+
+    /**
+     * 消息序号，同一用户内递增，客户端重连时携带收到的最后一个序号补发离线消息
+     */
+    private Long seq;
     
     /**
      * 消息类型常量
@@ -46,6 +51,7 @@ public class WebSocketMessage implements Serializable {
     public static final String TYPE_PAYMENT_SUCCESS = "PAYMENT_SUCCESS";      // 支付成功
     public static final String TYPE_ORDER_STATUS = "ORDER_STATUS_CHANGE";     // 订单状态变更
     public static final String TYPE_NEW_ORDER = "NEW_ORDER";                  // 新订单(商家端)
+    public static final String TYPE_NEW_ORDER_BATCH = "NEW_ORDER_BATCH";      // 合并的新订单(商家端)
     public static final String TYPE_ORDER_CANCEL = "ORDER_CANCEL";            // 订单取消
     public static final String TYPE_PONG = "PONG";                            // 心跳响应
 }
@@ -0,0 +1,85 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 用户端离线消息
+ * 推送给用户的消息按序号保存在redis有序集合中，只保留最近的若干条，用户重连后从收到的最后一个序号开始补发
+ */
+@Component
+public class WebSocketOutbox {
+
+    private static final String SEQ_KEY_PREFIX = "ws_outbox_seq:";
+    private static final String OUTBOX_KEY_PREFIX = "ws_outbox:";
+
+    /**
+     * 保存消息，裁剪到最大条数并刷新过期时间
+     */
+    private static final RedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('zadd', KEYS[1], ARGV[1], ARGV[2]) " +
+            "redis.call('zremrangebyrank', KEYS[1], 0, -tonumber(ARGV[3]) - 1) " +
+            "redis.call('pexpire', KEYS[1], ARGV[4]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[4]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    /**
+     * 生成用户的下一个消息序号
+     * @param userId
+     * @return
+     */
+    public long nextSeq(Long userId) {
+        return stringRedisTemplate.opsForValue().increment(SEQ_KEY_PREFIX + userId);
+    }
+
+    /**
+     * 查询用户当前的消息序号
+     * @param userId
+     * @return 没有消息时返回0
+     */
+    public long currentSeq(Long userId) {
+        String seq = stringRedisTemplate.opsForValue().get(SEQ_KEY_PREFIX + userId);
+        return seq == null ? 0 : Long.parseLong(seq);
+    }
+
+    /**
+     * 保存消息
+     * @param userId
+     * @param seq 消息序号
+     * @param jsonMessage 消息内容
+     */
+    public void save(Long userId, long seq, String jsonMessage) {
+        stringRedisTemplate.execute(SAVE_SCRIPT,
+                Arrays.asList(OUTBOX_KEY_PREFIX + userId, SEQ_KEY_PREFIX + userId),
+                String.valueOf(seq), jsonMessage,
+                String.valueOf(webSocketProperties.getOutboxSize()),
+                String.valueOf(webSocketProperties.getOutboxTtl()));
+    }
+
+    /**
+     * 查询指定序号之后的消息
+     * @param userId
+     * @param lastSeq 客户端收到的最后一个序号
+     * @return 按序号排列的消息
+     */
+    public List<String> listAfter(Long userId, long lastSeq) {
+        Set<String> messages = stringRedisTemplate.opsForZSet()
+                .rangeByScore(OUTBOX_KEY_PREFIX + userId, lastSeq + 1, Double.POSITIVE_INFINITY);
+        return messages == null ? new ArrayList<>() : new ArrayList<>(messages);
+    }
+}
@@ -0,0 +1,177 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebSocket集群推送总线
+ * 推送消息先在本节点合并，再通过一次redis发布广播到所有节点，各节点推送给自己持有的连接
+ * 广播在redis订阅线程上按到达顺序接收，按推送目标分配到固定的推送线程，同一用户的消息按发布顺序推送
+ */
+@Component
+@Slf4j
+public class WebSocketPushBus implements MessageListener {
+
+    /**
+     * 推送消息广播频道
+     */
+    public static final String CHANNEL = "websocket_push";
+
+    public static final String TARGET_USER = "user";
+    public static final String TARGET_ADMIN = "admin";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    private final ConcurrentLinkedQueue<PushMessage> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * 推送线程，每个线程只有一个，按推送目标取模选择，保证同一目标的消息顺序
+     */
+    private ThreadPoolExecutor[] deliverExecutors;
+
+    public WebSocketPushBus() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ws-push-");
+        threadFactory.setDaemon(true);
+        this.executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, webSocketProperties.getPushDeliverThreads());
+        deliverExecutors = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ws-deliver-" + i + "-");
+            threadFactory.setDaemon(true);
+            //队列满时丢弃新消息，不能阻塞redis订阅线程
+            deliverExecutors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(webSocketProperties.getPushDeliverQueueSize()), threadFactory,
+                    (r, e) -> log.error("【WebSocket推送】推送队列已满，丢弃消息"));
+        }
+    }
+
+    /**
+     * 推送消息，等待合并后广播到所有节点
+     * @param target 推送目标：user=用户端，admin=商家端
+     * @param id 用户id或商家id，为null时推送给该端所有连接
+     * @param text 消息内容
+     */
+    public void publish(String target, Long id, String text) {
+        pending.offer(new PushMessage(target, id, text));
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flush, webSocketProperties.getPushBatchDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 把等待中的消息分批发布到redis
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        int batchSize = webSocketProperties.getPushBatchSize();
+        List<PushMessage> batch = new ArrayList<>();
+        PushMessage message;
+        while ((message = pending.poll()) != null) {
+            batch.add(message);
+            if (batch.size() >= batchSize) {
+                send(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(List<PushMessage> batch) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, JSON.toJSONString(batch));
+        } catch (Exception e) {
+            //redis不可用时至少推送给本节点的连接
+            log.error("【WebSocket推送】广播失败，只推送给本节点，消息数：{}", batch.size(), e);
+            batch.forEach(this::dispatch);
+        }
+    }
+
+    /**
+     * 收到广播，交给推送线程推送给本节点的连接
+     * 需要在订阅线程上依次调用，不能交给线程池并发执行，否则先后两次广播的消息顺序会乱
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        List<PushMessage> batch = JSON.parseArray(new String(message.getBody(), StandardCharsets.UTF_8), PushMessage.class);
+        batch.forEach(this::dispatch);
+    }
+
+    /**
+     * 按推送目标选择推送线程，同一目标的消息在同一个线程上按顺序推送
+     */
+    private void dispatch(PushMessage message) {
+        int index = (Objects.hash(message.getTarget(), message.getId()) & Integer.MAX_VALUE) % deliverExecutors.length;
+        deliverExecutors[index].execute(() -> {
+            try {
+                deliver(message);
+            } catch (Exception e) {
+                log.error("【WebSocket推送】推送失败，目标：{} {}", message.getTarget(), message.getId(), e);
+            }
+        });
+    }
+
+    void deliver(PushMessage message) {
+        if (TARGET_USER.equals(message.getTarget())) {
+            OrderWebSocket.deliver(message.getId(), message.getText());
+        } else if (TARGET_ADMIN.equals(message.getTarget())) {
+            AdminWebSocket.deliver(message.getId(), message.getText());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+        for (ThreadPoolExecutor deliverExecutor : deliverExecutors) {
+            deliverExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 广播的推送消息
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PushMessage {
+        private String target;
+        private Long id;
+        private String text;
+    }
+}
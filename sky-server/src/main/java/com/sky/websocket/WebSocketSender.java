@@ -0,0 +1,147 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket消息发送器
+ * 每个连接一个有界发送队列，同一时间只有一个异步发送，上一条发送完成后再发送下一条
+ * （tomcat同一连接上前一个异步发送未完成时再次发送会抛出IllegalStateException）
+ * 慢客户端的队列满时丢弃新消息
+ */
+@Component
+@Slf4j
+public class WebSocketSender {
+
+    private static final String SEND_QUEUE = "sky.sendQueue";
+
+    private final WebSocketProperties webSocketProperties;
+
+    private final Counter droppedCounter;
+
+    public WebSocketSender(WebSocketProperties webSocketProperties, MeterRegistry meterRegistry) {
+        this.webSocketProperties = webSocketProperties;
+        this.droppedCounter = meterRegistry.counter("sky.websocket.dropped");
+    }
+
+    /**
+     * 异步发送文本消息
+     * 同一条消息发送给多个连接时共用同一个字符串，只序列化一次
+     * @param session
+     * @param text
+     * @return 是否已加入发送队列，连接已关闭或队列已满时返回false
+     */
+    public boolean send(Session session, String text) {
+        if (!session.isOpen()) {
+            return false;
+        }
+        SendQueue queue = sendQueue(session);
+        if (queue.size.incrementAndGet() > webSocketProperties.getSendQueueSize()) {
+            queue.size.decrementAndGet();
+            droppedCounter.increment();
+            log.debug("【WebSocket】连接{}的发送队列已满，丢弃消息", session.getId());
+            return false;
+        }
+        queue.messages.offer(text);
+        queue.drain();
+        return true;
+    }
+
+    private SendQueue sendQueue(Session session) {
+        return (SendQueue) session.getUserProperties()
+                .computeIfAbsent(SEND_QUEUE, k -> new SendQueue(session));
+    }
+
+    /**
+     * 连接的发送队列
+     */
+    private class SendQueue implements SendHandler {
+
+        private final Session session;
+
+        private final ConcurrentLinkedQueue<String> messages = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 队列中和正在发送的消息数
+         */
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * 是否有正在进行的发送
+         */
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        SendQueue(Session session) {
+            this.session = session;
+        }
+
+        /**
+         * 没有正在进行的发送时，发送队列中的下一条消息
+         */
+        void drain() {
+            while (sending.compareAndSet(false, true)) {
+                String text = messages.poll();
+                if (text == null) {
+                    sending.set(false);
+                    // 释放发送权之后可能有新消息入队，需要再检查一次
+                    if (messages.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    session.getAsyncRemote().sendText(text, this);
+                } catch (Exception e) {
+                    size.decrementAndGet();
+                    droppedCounter.increment();
+                    sending.set(false);
+                    log.debug("【WebSocket】连接{}发送消息失败：{}", session.getId(), e.getMessage());
+                    if (!session.isOpen()) {
+                        clear();
+                        return;
+                    }
+                    continue;
+                }
+                return;
+            }
+        }
+
+        /**
+         * 上一条消息发送完成，继续发送下一条
+         */
+        @Override
+        public void onResult(SendResult result) {
+            size.decrementAndGet();
+            if (!result.isOK()) {
+                droppedCounter.increment();
+                log.debug("【WebSocket】连接{}发送消息失败：{}", session.getId(), result.getException().getMessage());
+            }
+            sending.set(false);
+            if (session.isOpen()) {
+                drain();
+            } else {
+                clear();
+            }
+        }
+
+        /**
+         * 连接已关闭，丢弃队列中的消息
+         */
+        private void clear() {
+            while (messages.poll() != null) {
+                size.decrementAndGet();
+                droppedCounter.increment();
+            }
+        }
+    }
+}
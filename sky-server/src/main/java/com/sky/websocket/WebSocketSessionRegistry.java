@@ -0,0 +1,90 @@
+package com.sky.websocket;
+
+import javax.websocket.Session;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * WebSocket会话注册表
+ * 一个id可以同时有多个连接（如用户在多个设备上登录）
+ */
+public class WebSocketSessionRegistry {
+
+    /**
+     * id -> 该id在本节点上的所有连接
+     */
+    private final ConcurrentHashMap<Long, Set<Session>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 注册连接
+     * 在compute中加入连接，和remove移除空集合互斥，不会加入到刚被移除的集合中
+     * @param id
+     * @param session
+     */
+    public void add(Long id, Session session) {
+        sessions.compute(id, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(session);
+            return set;
+        });
+    }
+
+    /**
+     * 移除连接，id没有连接后一并移除
+     * @param id
+     * @param session
+     */
+    public void remove(Long id, Session session) {
+        sessions.computeIfPresent(id, (k, set) -> {
+            set.remove(session);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * 查询id的所有连接
+     * @param id
+     * @return
+     */
+    public Set<Session> get(Long id) {
+        Set<Session> set = sessions.get(id);
+        return set != null ? set : Collections.emptySet();
+    }
+
+    /**
+     * 遍历所有连接
+     * @param action
+     */
+    public void forEach(BiConsumer<Long, Session> action) {
+        sessions.forEach((id, set) -> set.forEach(session -> action.accept(id, session)));
+    }
+
+    /**
+     * 检查id在本节点上是否有打开的连接
+     * @param id
+     * @return
+     */
+    public boolean isOnline(Long id) {
+        return get(id).stream().anyMatch(Session::isOpen);
+    }
+
+    /**
+     * 本节点上有连接的id数
+     * @return
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 本节点上的连接数
+     * @return
+     */
+    public int sessionCount() {
+        return sessions.values().stream().mapToInt(Set::size).sum();
+    }
+}
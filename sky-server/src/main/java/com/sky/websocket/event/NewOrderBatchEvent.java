@@ -0,0 +1,25 @@
+package com.sky.websocket.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 合并的来单提醒，一个合并窗口内的新订单一次推送给商家
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewOrderBatchEvent implements Serializable {
+
+    //新订单数
+    private Integer count;
+
+    //新订单摘要
+    private List<Object> orders;
+}
@@ -0,0 +1,35 @@
+package com.sky.websocket.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 来单提醒事件，推送给所有在线商家
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewOrderEvent implements Serializable {
+
+    private Long orderId;
+
+    private String orderNumber;
+
+    private BigDecimal amount;
+
+    //收货人
+    private String consignee;
+
+    private String phone;
+
+    private String address;
+
+    private LocalDateTime orderTime;
+}
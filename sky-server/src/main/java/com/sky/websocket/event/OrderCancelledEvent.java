@@ -0,0 +1,29 @@
+package com.sky.websocket.event;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 订单取消事件，推送给下单用户
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCancelledEvent implements Serializable {
+
+    //接收消息的用户id，不推送给客户端
+    @JSONField(serialize = false)
+    private Long userId;
+
+    private Long orderId;
+
+    private String orderNumber;
+
+    private String cancelReason;
+}
@@ -0,0 +1,33 @@
+package com.sky.websocket.event;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 支付成功事件，推送给下单用户
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSucceededEvent implements Serializable {
+
+    //接收消息的用户id，不推送给客户端
+    @JSONField(serialize = false)
+    private Long userId;
+
+    private Long orderId;
+
+    private String orderNumber;
+
+    private BigDecimal amount;
+
+    private LocalDateTime payTime;
+}
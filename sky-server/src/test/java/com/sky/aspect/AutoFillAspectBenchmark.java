@@ -0,0 +1,157 @@
+package com.sky.aspect;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sky.annotation.AutoFill;
+import com.sky.constant.AutoFillConstant;
+import com.sky.context.BaseContext;
+import com.sky.entity.Employee;
+import com.sky.enumeration.OperationType;
+import com.sky.mapper.EmployeeMapper;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 公共字段自动填充切面基准测试：每次调用的开销
+ * methodHandle为当前的AutoFillAspect，reflection为改造前每次getDeclaredMethod再反射调用的实现
+ * 连接点用动态代理模拟，两种实现的取注解、取参数开销相同
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main AutoFillAspectBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoFillAspectBenchmark {
+
+    @Param({"insert", "update"})
+    private String operation;
+
+    private AutoFillAspect aspect;
+
+    private JoinPoint joinPoint;
+
+    private Employee employee;
+
+    @Setup
+    public void setUp() throws Exception {
+        ((Logger) LoggerFactory.getLogger(AutoFillAspect.class)).setLevel(Level.INFO);
+        BaseContext.setCurrentId(1L);
+        aspect = new AutoFillAspect();
+        employee = new Employee();
+        Method mapperMethod = EmployeeMapper.class.getMethod(operation, Employee.class);
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MethodSignature.class},
+                (proxy, method, args) -> "getMethod".equals(method.getName()) ? mapperMethod : null);
+        Object[] joinPointArgs = {employee};
+        joinPoint = (JoinPoint) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JoinPoint.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getSignature":
+                            return signature;
+                        case "getArgs":
+                            return joinPointArgs;
+                        default:
+                            return null;
+                    }
+                });
+
+        // 两种实现都要填充相同的字段
+        aspect.autoFill(joinPoint);
+        Employee expected = copy(employee);
+        employee.setUpdateTime(null);
+        employee.setUpdateUser(null);
+        employee.setCreateTime(null);
+        employee.setCreateUser(null);
+        reflection();
+        if (!sameFilled(expected, employee)) {
+            throw new IllegalStateException("填充结果不一致：" + expected + " / " + employee);
+        }
+    }
+
+    @Benchmark
+    public Employee methodHandle() {
+        aspect.autoFill(joinPoint);
+        return employee;
+    }
+
+    /**
+     * 改造前AutoFillAspect.autoFill的实现（去掉了每次调用的info日志）
+     */
+    @Benchmark
+    public Employee reflection() {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class);
+        OperationType operationType = autoFill.value();
+        Object[] args = joinPoint.getArgs();
+        if (args == null || args.length == 0) {
+            return null;
+        }
+        Object entity = args[0];
+        LocalDateTime time = LocalDateTime.now();
+        Long empId = BaseContext.getCurrentId();
+        try {
+            if (operationType == OperationType.INSERT) {
+                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
+                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+                setCreateTime.invoke(entity, time);
+                setUpdateTime.invoke(entity, time);
+                setCreateUser.invoke(entity, empId);
+                setUpdateUser.invoke(entity, empId);
+            } else {
+                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+                setUpdateTime.invoke(entity, time);
+                setUpdateUser.invoke(entity, empId);
+            }
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return employee;
+    }
+
+    private static Employee copy(Employee employee) {
+        Employee copy = new Employee();
+        copy.setCreateTime(employee.getCreateTime());
+        copy.setUpdateTime(employee.getUpdateTime());
+        copy.setCreateUser(employee.getCreateUser());
+        copy.setUpdateUser(employee.getUpdateUser());
+        return copy;
+    }
+
+    private static boolean sameFilled(Employee a, Employee b) {
+        return (a.getCreateTime() == null) == (b.getCreateTime() == null)
+                && (a.getUpdateTime() == null) == (b.getUpdateTime() == null)
+                && Objects.equals(a.getCreateUser(), b.getCreateUser())
+                && Objects.equals(a.getUpdateUser(), b.getUpdateUser())
+                && a.getUpdateTime() != null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AutoFillAspectBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.sky.cache;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtClaimsCacheTest {
+
+    private static final String SECRET = "itheima";
+
+    private JwtClaimsCache jwtClaimsCache;
+
+    @BeforeEach
+    void setUp() {
+        jwtClaimsCache = new JwtClaimsCache(new JwtProperties());
+    }
+
+    @Test
+    void servesValidTokenFromCache() {
+        String token = token(60_000);
+
+        Claims first = jwtClaimsCache.parse(SECRET, token);
+        Claims second = jwtClaimsCache.parse(SECRET, token);
+
+        assertSame(first, second);
+        assertEquals("7", first.get(JwtClaimsConstant.USER_ID).toString());
+    }
+
+    @Test
+    void expiredTokenIsNeverCached() {
+        String token = token(-1_000);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtClaimsCache.parse(SECRET, token));
+        assertThrows(ExpiredJwtException.class, () -> jwtClaimsCache.parse(SECRET, token));
+    }
+
+    @Test
+    void cachedTokenIsNotServedAfterItExpires() throws Exception {
+        String token = token(1_000);
+        jwtClaimsCache.parse(SECRET, token);
+
+        Thread.sleep(1_500);
+
+        // 缓存在令牌过期时间失效，重新校验时抛出过期异常
+        assertThrows(ExpiredJwtException.class, () -> jwtClaimsCache.parse(SECRET, token));
+    }
+
+    @Test
+    void cachedTokenIsNotServedForAnotherSecret() {
+        String token = token(60_000);
+        jwtClaimsCache.parse(SECRET, token);
+
+        assertThrows(Exception.class, () -> jwtClaimsCache.parse("itcast", token));
+    }
+
+    private static String token(long ttlMillis) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID, 7L);
+        return JwtUtil.createJWT(SECRET, ttlMillis, claims);
+    }
+}
@@ -0,0 +1,141 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.interceptor.JwtTokenUserInterceptor;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtRevocationListTest {
+
+    private static final String SECRET = "itheima";
+
+    private JwtProperties jwtProperties;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private JwtClaimsCache jwtClaimsCache;
+
+    private JwtRevocationList jwtRevocationList;
+
+    private JwtTokenUserInterceptor interceptor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jwtProperties = new JwtProperties();
+        jwtProperties.setUserSecretKey(SECRET);
+        jwtProperties.setUserTokenName("authentication");
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+        when(stringRedisTemplate.opsForZSet()).thenReturn(mock(ZSetOperations.class));
+
+        jwtClaimsCache = spy(new JwtClaimsCache(jwtProperties));
+        jwtRevocationList = new JwtRevocationList(jwtProperties);
+        ReflectionTestUtils.setField(jwtRevocationList, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(jwtRevocationList, "jwtClaimsCache", jwtClaimsCache);
+
+        interceptor = new JwtTokenUserInterceptor();
+        ReflectionTestUtils.setField(interceptor, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(interceptor, "jwtClaimsCache", jwtClaimsCache);
+        ReflectionTestUtils.setField(interceptor, "jwtRevocationList", jwtRevocationList);
+    }
+
+    @Test
+    void revokedTokenIsRejectedEvenWhenCached() throws Exception {
+        String token = token();
+        assertEquals(200, preHandle(token).getStatus());
+
+        Claims cached = jwtClaimsCache.parse(SECRET, token);
+        jwtRevocationList.revoke(token, cached.getExpiration());
+        when(stringRedisTemplate.hasKey(anyString())).thenReturn(true);
+
+        verify(jwtClaimsCache).invalidate(token);
+        verify(stringRedisTemplate).convertAndSend(eq(CacheConstant.JWT_REVOKE_CHANNEL), anyString());
+        assertTrue(jwtRevocationList.isRevoked(token));
+        assertEquals(401, preHandle(token).getStatus());
+        // 注销时已移出缓存，再次解析会重新校验签名
+        assertNotSame(cached, jwtClaimsCache.parse(SECRET, token));
+    }
+
+    @Test
+    void otherTokensAreNotAffected() throws Exception {
+        String revoked = token(7L);
+        jwtRevocationList.revoke(revoked, jwtClaimsCache.parse(SECRET, revoked).getExpiration());
+        String other = token(8L);
+
+        assertFalse(jwtRevocationList.isRevoked(other));
+        assertEquals(200, preHandle(other).getStatus());
+    }
+
+    @Test
+    void treatsTokenAsRevokedWhenRedisIsDown() throws Exception {
+        String token = token();
+        jwtRevocationList.revoke(token, jwtClaimsCache.parse(SECRET, token).getExpiration());
+        when(stringRedisTemplate.hasKey(anyString())).thenThrow(new IllegalStateException("redis down"));
+
+        assertEquals(401, preHandle(token).getStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuildsFilterWhenChannelIsResubscribed() throws Exception {
+        String token = token();
+        ZSetOperations<String, String> zSet = stringRedisTemplate.opsForZSet();
+        when(stringRedisTemplate.hasKey(anyString())).thenReturn(true);
+        jwtRevocationList.rebuild();
+        byte[] channel = CacheConstant.JWT_REVOKE_CHANNEL.getBytes();
+
+        // 断线期间其他节点注销了令牌，注销消息没有收到
+        when(zSet.range(anyString(), anyLong(), anyLong()))
+                .thenReturn(Collections.singleton(token.substring(token.lastIndexOf('.') + 1)));
+        assertFalse(jwtRevocationList.isRevoked(token));
+
+        jwtRevocationList.onChannelSubscribed(channel, 1);
+        assertTrue(jwtRevocationList.isRevoked(token));
+    }
+
+    private MockHttpServletResponse preHandle(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/order/list");
+        request.addHeader("authentication", token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, new HandlerMethod(this, "toString"));
+        return response;
+    }
+
+    private static String token() {
+        return token(7L);
+    }
+
+    private static String token(Long userId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID, userId);
+        return JwtUtil.createJWT(SECRET, 60_000, claims);
+    }
+}
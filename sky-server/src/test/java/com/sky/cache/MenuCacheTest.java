@@ -0,0 +1,221 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Slf4j
+class MenuCacheTest {
+
+    private static final int CALLERS = 500;
+
+    private static final String KEY = "dish_1";
+
+    private RedisTemplate redisTemplate;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private MenuCache menuCache;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        menuCache = new MenuCache(new MenuCacheProperties());
+        ReflectionTestUtils.setField(menuCache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(menuCache, "stringRedisTemplate", stringRedisTemplate);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ExecutorService executor;
+
+    /**
+     * 500个并发请求同时未命中同一个key：不合并时每个请求都查询数据库，合并后只查询一次
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void concurrentMissesLoadOnceWithCoalescing() throws Exception {
+        ValueOperations valueOperations = fakeRedis(new ConcurrentHashMap<>());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        AtomicInteger dbQueries = new AtomicInteger();
+        Supplier<List<String>> loader = slowLoader(dbQueries);
+
+        //改造前：查询缓存，未命中时直接查询数据库
+        Map<String, List<String>> naiveCache = new ConcurrentHashMap<>();
+        List<List<String>> naive = runConcurrently(i -> {
+            List<String> cached = naiveCache.get(KEY);
+            if (cached == null) {
+                cached = loader.get();
+                naiveCache.put(KEY, cached);
+            }
+            return cached;
+        });
+        int withoutCoalescing = dbQueries.getAndSet(0);
+
+        List<List<String>> coalesced = runConcurrently(i -> menuCache.get(KEY, loader));
+        int withCoalescing = dbQueries.get();
+
+        log.info("{}个并发请求未命中同一个key，数据库查询次数：不合并{}次，合并{}次", CALLERS, withoutCoalescing, withCoalescing);
+        assertEquals(1, withCoalescing);
+        assertTrue(withoutCoalescing > 1);
+        assertTrue(naive.stream().allMatch(list -> list.size() == 1));
+        assertTrue(coalesced.stream().allMatch(list -> list.size() == 1));
+    }
+
+    /**
+     * 两个节点各250个并发请求：开启redis锁后只有拿到锁的节点查询数据库，另一个节点读取它写入redis的结果
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisLockLoadsOnceAcrossNodes() throws Exception {
+        Map<Object, Object> redis = new ConcurrentHashMap<>();
+        ValueOperations valueOperations = fakeRedis(redis);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            return redis.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+        });
+        MenuCacheProperties properties = new MenuCacheProperties();
+        properties.setRedisLockEnabled(true);
+        MenuCache[] nodes = new MenuCache[2];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new MenuCache(properties);
+            ReflectionTestUtils.setField(nodes[i], "redisTemplate", redisTemplate);
+            ReflectionTestUtils.setField(nodes[i], "stringRedisTemplate", stringRedisTemplate);
+        }
+        AtomicInteger dbQueries = new AtomicInteger();
+        Supplier<List<String>> loader = slowLoader(dbQueries);
+
+        List<List<String>> results = runConcurrently(i -> nodes[i % 2].get(KEY, loader));
+
+        assertEquals(1, dbQueries.get());
+        assertTrue(results.stream().allMatch(list -> list.size() == 1));
+    }
+
+    private <T> List<T> runConcurrently(Function<Integer, T> call) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return call.apply(index);
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>(CALLERS);
+        for (Future<T> future : futures) {
+            results.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    /**
+     * 模拟一次耗时50毫秒的数据库查询
+     */
+    private static Supplier<List<String>> slowLoader(AtomicInteger dbQueries) {
+        return () -> {
+            dbQueries.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList("宫保鸡丁");
+        };
+    }
+
+    /**
+     * 用内存map模拟redis的get、set、setIfAbsent
+     */
+    @SuppressWarnings("unchecked")
+    private static ValueOperations fakeRedis(Map<Object, Object> redis) {
+        ValueOperations valueOperations = mock(ValueOperations.class);
+        when(valueOperations.get(any())).thenAnswer(invocation -> redis.get(invocation.getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(any(), any(), anyLong(), any(TimeUnit.class));
+        when(valueOperations.setIfAbsent(any(), any(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        return valueOperations;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictByPrefixScansInBatchesInsteadOfKeys() {
+        List<String> keys = IntStream.range(0, 1200).mapToObj(i -> "dish_" + i).collect(Collectors.toList());
+        Cursor<String> cursor = cursor(keys.iterator());
+        when(stringRedisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+        List<String> deleted = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            Collection<String> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            deleted.addAll(batch);
+            return (long) batch.size();
+        }).when(stringRedisTemplate).unlink(any(Collection.class));
+
+        menuCache.evictByPrefix("dish_");
+
+        assertEquals(keys, deleted);
+        assertEquals(Arrays.asList(500, 500, 200), batchSizes);
+        verify(redisTemplate, never()).keys(any());
+        verify(stringRedisTemplate, never()).keys(anyString());
+        verify(stringRedisTemplate).convertAndSend(CacheConstant.MENU_EVICT_CHANNEL, "dish_*");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<String> cursor(Iterator<String> iterator) {
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+}
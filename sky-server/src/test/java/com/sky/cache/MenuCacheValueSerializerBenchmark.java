@@ -0,0 +1,97 @@
+package com.sky.cache;
+
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 菜单缓存value序列化基准测试：jdk序列化、每个对象带类型信息的json、MenuCacheValueSerializer
+ * 每种数据量的字节数在setup时打印
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main MenuCacheValueSerializerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MenuCacheValueSerializerBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int dishCount;
+
+    private final JdkSerializationRedisSerializer jdk = new JdkSerializationRedisSerializer();
+
+    private final GenericJackson2JsonRedisSerializer typedJson = MenuCacheValueSerializerTest.typedJson();
+
+    private final MenuCacheValueSerializer json = new MenuCacheValueSerializer();
+
+    private List<DishVO> dishes;
+
+    private byte[] jdkBytes;
+
+    private byte[] typedJsonBytes;
+
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() {
+        dishes = MenuCacheValueSerializerTest.dishes(dishCount);
+        jdkBytes = jdk.serialize(dishes);
+        typedJsonBytes = typedJson.serialize(dishes);
+        jsonBytes = json.serialize(dishes);
+        System.out.println(dishCount + "个菜品：jdk " + jdkBytes.length + "字节，带类型json " + typedJsonBytes.length
+                + "字节，MenuCacheValueSerializer " + jsonBytes.length + "字节");
+    }
+
+    @Benchmark
+    public byte[] jdkEncode() {
+        return jdk.serialize(dishes);
+    }
+
+    @Benchmark
+    public Object jdkDecode() {
+        return jdk.deserialize(jdkBytes);
+    }
+
+    @Benchmark
+    public byte[] typedJsonEncode() {
+        return typedJson.serialize(dishes);
+    }
+
+    @Benchmark
+    public Object typedJsonDecode() {
+        return typedJson.deserialize(typedJsonBytes);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return json.serialize(dishes);
+    }
+
+    @Benchmark
+    public Object jsonDecode() {
+        return json.deserialize(jsonBytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MenuCacheValueSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+class MenuCacheValueSerializerTest {
+
+    private final MenuCacheValueSerializer serializer = new MenuCacheValueSerializer();
+
+    /**
+     * 比每个对象都带类型信息的json小；菜品少时比jdk序列化小，菜品多时jdk只写一次类描述，两者接近
+     */
+    @Test
+    void dishListRoundTripsAndIsSmallerThanTypedJson() {
+        for (int count : new int[]{1, 20, 100}) {
+            List<DishVO> dishes = dishes(count);
+
+            byte[] bytes = serializer.serialize(dishes);
+            int jdk = new JdkSerializationRedisSerializer().serialize(dishes).length;
+            int typedJson = typedJson().serialize(dishes).length;
+            log.info("{}个菜品：{}字节，jdk {}字节，带类型json {}字节", count, bytes.length, jdk, typedJson);
+
+            assertEquals(dishes, serializer.deserialize(bytes));
+            assertTrue(bytes.length < typedJson);
+            if (count == 1) {
+                assertTrue(bytes.length < jdk);
+            }
+        }
+    }
+
+    @Test
+    void setmealListAndEmptyListRoundTrip() {
+        List<Setmeal> setmeals = Collections.singletonList(Setmeal.builder().id(1L).categoryId(2L).name("套餐A")
+                .price(new BigDecimal("39.90")).status(1).updateTime(LocalDateTime.of(2024, 5, 1, 12, 0)).build());
+
+        assertEquals(setmeals, serializer.deserialize(serializer.serialize(setmeals)));
+        assertEquals(new ArrayList<>(), serializer.deserialize(serializer.serialize(new ArrayList<>())));
+    }
+
+    @Test
+    void oldFormatsFailToDeserialize() {
+        // 旧格式的缓存值反序列化失败，MenuCache按未命中处理并覆盖
+        List<DishVO> dishes = dishes(1);
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(dishes);
+        byte[] typedJson = typedJson().serialize(dishes);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(jdk));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(typedJson));
+    }
+
+    @Test
+    void rejectsTypesOutsideProject() {
+        byte[] bytes = "{\"type\":\"java.net.URL\",\"data\":[\"http://localhost\"]}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    /**
+     * 改造前使用的每个对象都带类型信息的json序列化
+     */
+    static GenericJackson2JsonRedisSerializer typedJson() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    /**
+     * 构造菜品列表，字符串都是新建的实例，和从数据库读出的数据一样，不会被jdk序列化按引用去重
+     */
+    static List<DishVO> dishes(int count) {
+        List<DishVO> dishes = new ArrayList<>(count);
+        for (long i = 1; i <= count; i++) {
+            List<DishFlavor> flavors = Arrays.asList(
+                    DishFlavor.builder().id(i * 2).dishId(i).name(new String("辣度"))
+                            .value(new String("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]")).build(),
+                    DishFlavor.builder().id(i * 2 + 1).dishId(i).name(new String("忌口"))
+                            .value(new String("[\"不要葱\",\"不要蒜\",\"不要香菜\"]")).build());
+            dishes.add(DishVO.builder().id(i).name("菜品" + i).categoryId(11L)
+                    .price(new BigDecimal("28.00")).image("https://sky-itcast.oss-cn-beijing.aliyuncs.com/" + i + ".png")
+                    .description(new String("招牌菜")).status(1).updateTime(LocalDateTime.of(2024, 5, 1, 12, 0))
+                    .flavors(new ArrayList<>(flavors)).build());
+        }
+        return dishes;
+    }
+}
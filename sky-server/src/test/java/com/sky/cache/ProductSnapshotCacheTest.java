@@ -0,0 +1,72 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSnapshotCacheTest {
+
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private SetmealMapper setmealMapper;
+    @InjectMocks
+    private ProductSnapshotCache productSnapshotCache;
+
+    @Test
+    void reloadAllFixesMissedRefreshes() {
+        when(dishMapper.list(any(Dish.class))).thenReturn(Arrays.asList(dish(1L, "10"), dish(2L, "20")));
+        when(setmealMapper.list(any(Setmeal.class))).thenReturn(Collections.emptyList());
+        productSnapshotCache.loadAll();
+        assertEquals(new BigDecimal("10"), productSnapshotCache.getDish(1L).getPrice());
+
+        // 改价和删除的刷新通知丢失，定时全量加载后修正
+        when(dishMapper.list(any(Dish.class))).thenReturn(Collections.singletonList(dish(1L, "12")));
+        productSnapshotCache.reloadAll();
+
+        assertEquals(new BigDecimal("12"), productSnapshotCache.getDish(1L).getPrice());
+        assertNull(productSnapshotCache.getDish(2L));
+    }
+
+    @Test
+    void resubscribeReloadsOnlyAfterInitialLoad() {
+        productSnapshotCache.onChannelSubscribed(new byte[0], 1);
+        verify(dishMapper, never()).list(any(Dish.class));
+
+        when(dishMapper.list(any(Dish.class))).thenReturn(Collections.singletonList(dish(1L, "10")));
+        when(setmealMapper.list(any(Setmeal.class))).thenReturn(Collections.emptyList());
+        productSnapshotCache.loadAll();
+
+        when(dishMapper.list(any(Dish.class))).thenReturn(Collections.singletonList(dish(1L, "15")));
+        productSnapshotCache.onChannelSubscribed(new byte[0], 1);
+
+        assertEquals(new BigDecimal("15"), productSnapshotCache.getDish(1L).getPrice());
+    }
+
+    private static Dish dish(Long id, String price) {
+        Dish dish = new Dish();
+        dish.setId(id);
+        dish.setName("dish" + id);
+        dish.setPrice(new BigDecimal(price));
+        dish.setStatus(1);
+        return dish;
+    }
+}
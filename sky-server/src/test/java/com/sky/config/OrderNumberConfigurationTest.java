@@ -0,0 +1,50 @@
+package com.sky.config;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.task.OrderNumberTask;
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderNumberConfigurationTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final OrderNumberConfiguration configuration = new OrderNumberConfiguration();
+
+    @Test
+    void failsFastWithoutWorkerId() {
+        OrderNumberProperties properties = new OrderNumberProperties();
+
+        assertThrows(IllegalStateException.class,
+                () -> configuration.snowflakeIdGenerator(properties, stringRedisTemplate));
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    void resumesAfterSavedHighWaterMark() {
+        OrderNumberProperties properties = new OrderNumberProperties();
+        properties.setWorkerId(3L);
+        long highWaterMark = System.currentTimeMillis() + 60_000;
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(OrderNumberTask.HIGH_WATER_MARK_KEY + 3)).thenReturn(String.valueOf(highWaterMark));
+
+        SnowflakeIdGenerator generator = configuration.snowflakeIdGenerator(properties, stringRedisTemplate);
+        generator.nextId();
+
+        assertTrue(generator.getLastTimestamp() > highWaterMark);
+    }
+}
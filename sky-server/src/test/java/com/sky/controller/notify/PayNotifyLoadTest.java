@@ -0,0 +1,256 @@
+package com.sky.controller.notify;
+
+import com.sky.properties.PaymentProperties;
+import com.sky.properties.WeChatProperties;
+import com.sky.service.OrderService;
+import com.sky.task.PayNotifyInbox;
+import com.sky.task.PayNotifyTask;
+import com.sky.utils.WeChatPayNotifyDecryptor;
+import com.sky.utils.WeChatPayNotifySamples;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 支付回调压测：模拟微信并发回放加密的回调报文（含10%的重复回调）
+ * 收件箱用内存队列模拟，每次写入停顿一次redis往返；订单处理停顿PAY_SUCCESS_MILLIS模拟数据库更新和来单提醒
+ * 对比改造前在请求线程中直接处理订单的响应耗时
+ */
+@Slf4j
+class PayNotifyLoadTest {
+
+    private static final int ORDERS = 500;
+
+    private static final int CLIENTS = 4;
+
+    private static final long REDIS_ROUND_TRIP_MICROS = 200;
+
+    private static final long PAY_SUCCESS_MILLIS = 5;
+
+    private final Queue<MapRecord<String, Object, Object>> stream = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<String, AtomicInteger> paid = new ConcurrentHashMap<>();
+
+    private final List<RecordId> acknowledged = Collections.synchronizedList(new ArrayList<>());
+
+    private WeChatPayNotifyDecryptor decryptor;
+
+    private OrderService orderService;
+
+    private PayNotifyInbox payNotifyInbox;
+
+    private PayNotifyController controller;
+
+    private ExecutorService clients;
+
+    @BeforeEach
+    void setUp() {
+        WeChatProperties weChatProperties = new WeChatProperties();
+        weChatProperties.setApiV3Key(WeChatPayNotifySamples.API_V3_KEY);
+        decryptor = new WeChatPayNotifyDecryptor();
+        ReflectionTestUtils.setField(decryptor, "weChatProperties", weChatProperties);
+
+        payNotifyInbox = mock(PayNotifyInbox.class);
+        when(payNotifyInbox.append(anyString(), anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(REDIS_ROUND_TRIP_MICROS));
+            Map<Object, Object> value = new HashMap<>();
+            value.put(PayNotifyInbox.OUT_TRADE_NO, invocation.getArgument(0));
+            value.put(PayNotifyInbox.TRANSACTION_ID, invocation.getArgument(1));
+            RecordId id = RecordId.of(System.currentTimeMillis(), sequence.incrementAndGet());
+            stream.add(StreamRecords.newRecord().in("pay_notify_inbox").withId(id).ofMap(value));
+            return id;
+        });
+        when(payNotifyInbox.read()).thenAnswer(invocation -> {
+            List<MapRecord<String, Object, Object>> batch = new ArrayList<>();
+            MapRecord<String, Object, Object> record;
+            while (batch.size() < 100 && (record = stream.poll()) != null) {
+                batch.add(record);
+            }
+            return batch;
+        });
+        doAnswer(invocation -> acknowledged.addAll(invocation.getArgument(0)))
+                .when(payNotifyInbox).acknowledge(anyList());
+
+        orderService = mock(OrderService.class);
+        stubPaySuccess();
+
+        controller = new PayNotifyController();
+        ReflectionTestUtils.setField(controller, "payNotifyInbox", payNotifyInbox);
+        ReflectionTestUtils.setField(controller, "weChatPayNotifyDecryptor", decryptor);
+        clients = Executors.newFixedThreadPool(CLIENTS);
+        //测试没有日志配置，默认DEBUG级别会把每条回调报文输出到控制台，压测时只保留警告
+        controllerLogger().setLevel(Level.WARN);
+    }
+
+    private static Logger controllerLogger() {
+        return (Logger) LoggerFactory.getLogger(PayNotifyController.class);
+    }
+
+    private void stubPaySuccess() {
+        doAnswer(invocation -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PAY_SUCCESS_MILLIS));
+            paid.computeIfAbsent(invocation.getArgument(0), k -> new AtomicInteger()).incrementAndGet();
+            return null;
+        }).when(orderService).paySuccess(anyString());
+        //批量处理：还没支付的订单一次更新，已支付的作为重复回调返回，由任务逐条处理
+        when(orderService.paySuccessBatch(anyList())).thenAnswer(invocation -> {
+            List<String> remaining = new ArrayList<>();
+            for (String number : invocation.<List<String>>getArgument(0)) {
+                if (paid.putIfAbsent(number, new AtomicInteger(1)) != null) {
+                    remaining.add(number);
+                }
+            }
+            return remaining;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+        controllerLogger().setLevel(null);
+    }
+
+    @Test
+    void acksWithoutWaitingForOrderProcessing() throws Exception {
+        List<String> bodies = payloads();
+        Handler inlineHandler = body -> {
+            //改造前：请求线程中解密后直接处理订单再响应
+            WeChatPayNotifyDecryptor.Transaction transaction = decryptor.decryptTransaction(body);
+            orderService.paySuccess(transaction.getOutTradeNo());
+            return 200;
+        };
+        Handler inboxHandler = body -> {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/notify/paySuccess");
+            request.setContent(body.getBytes(StandardCharsets.UTF_8));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            controller.paySuccessNotify(request, response);
+            assertTrue(response.getContentAsString().contains("SUCCESS"));
+            return response.getStatus();
+        };
+        //预热
+        replay(bodies.subList(0, 200), inlineHandler);
+        replay(bodies.subList(0, 200), inboxHandler);
+        stream.clear();
+        reset(orderService);
+        stubPaySuccess();
+
+        long begin = System.nanoTime();
+        long[] inline = replay(bodies, inlineHandler);
+        long inlineMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        paid.clear();
+        reset(orderService);
+        stubPaySuccess();
+
+        begin = System.nanoTime();
+        long[] inbox = replay(bodies, inboxHandler);
+        long inboxMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        verifyNoInteractions(orderService);
+        log.info("{}个并发回放{}条回调：改造前总耗时{}ms，响应p50={}us p99={}us；写入收件箱后总耗时{}ms，响应p50={}us p99={}us",
+                CLIENTS, bodies.size(), inlineMillis, percentile(inline, 50), percentile(inline, 99),
+                inboxMillis, percentile(inbox, 50), percentile(inbox, 99));
+        assertEquals(bodies.size(), stream.size());
+        assertTrue(inboxMillis < inlineMillis);
+        assertTrue(percentile(inbox, 50) < percentile(inline, 50));
+
+        //后台任务处理收件箱中的所有回调，重复回调由订单的条件更新保证只生效一次
+        PayNotifyTask payNotifyTask = new PayNotifyTask();
+        ReflectionTestUtils.setField(payNotifyTask, "payNotifyInbox", payNotifyInbox);
+        ReflectionTestUtils.setField(payNotifyTask, "orderService", orderService);
+        ReflectionTestUtils.setField(payNotifyTask, "paymentProperties", new PaymentProperties());
+        while (!stream.isEmpty()) {
+            payNotifyTask.processPayNotify();
+        }
+        assertEquals(bodies.size(), acknowledged.size());
+        assertEquals(ORDERS, paid.size());
+    }
+
+    /**
+     * 每个订单一条回调，其中10%的订单微信重复回调一次
+     */
+    private static List<String> payloads() {
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            String body = WeChatPayNotifySamples.paySuccess("17" + (100000000L + i), "4200002" + (100000000L + i));
+            bodies.add(body);
+            if (i % 10 == 0) {
+                bodies.add(body);
+            }
+        }
+        Collections.shuffle(bodies);
+        return bodies;
+    }
+
+    /**
+     * CLIENTS个线程并发回放，返回每条回调的响应耗时(微秒)
+     */
+    private long[] replay(List<String> bodies, Handler handler) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>(bodies.size());
+        for (String body : bodies) {
+            futures.add(clients.submit(() -> {
+                start.await();
+                long begin = System.nanoTime();
+                int status = handler.handle(body);
+                long elapsed = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin);
+                assertEquals(200, status);
+                return elapsed;
+            }));
+        }
+        start.countDown();
+        long[] latencies = new long[bodies.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = futures.get(i).get(60, TimeUnit.SECONDS);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private interface Handler {
+        int handle(String body) throws Exception;
+    }
+}
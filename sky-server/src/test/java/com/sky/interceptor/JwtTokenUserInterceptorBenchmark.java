@@ -0,0 +1,111 @@
+package com.sky.interceptor;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.sky.cache.JwtClaimsCache;
+import com.sky.cache.JwtRevocationList;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户端jwt拦截器基准测试：每次请求的令牌校验开销
+ * interceptor为完整的preHandle（注销检查+已校验令牌缓存），parse为每次重新校验签名，original为改造前每次新建解析器
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main JwtTokenUserInterceptorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenUserInterceptorBenchmark {
+
+    private static final String SECRET = "itheima";
+
+    private String token;
+
+    private JwtTokenUserInterceptor interceptor;
+
+    private HandlerMethod handler;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        ((Logger) LoggerFactory.getLogger(JwtTokenUserInterceptor.class)).setLevel(Level.INFO);
+
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setUserSecretKey(SECRET);
+        jwtProperties.setUserTokenName("authentication");
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID, 1L);
+        token = JwtUtil.createJWT(SECRET, TimeUnit.HOURS.toMillis(2), claims);
+
+        // 没有注销过令牌时布隆过滤器为空，isRevoked不访问redis
+        JwtClaimsCache jwtClaimsCache = new JwtClaimsCache(jwtProperties);
+        interceptor = new JwtTokenUserInterceptor();
+        ReflectionTestUtils.setField(interceptor, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(interceptor, "jwtClaimsCache", jwtClaimsCache);
+        ReflectionTestUtils.setField(interceptor, "jwtRevocationList", new JwtRevocationList(jwtProperties));
+        handler = new HandlerMethod(this, "toString");
+        request = new MockHttpServletRequest();
+        request.addHeader("authentication", token);
+        response = new MockHttpServletResponse();
+
+        if (!interceptor.preHandle(request, response, handler)) {
+            throw new IllegalStateException("令牌校验失败");
+        }
+    }
+
+    @Benchmark
+    public boolean interceptor() throws Exception {
+        return interceptor.preHandle(request, response, handler);
+    }
+
+    @Benchmark
+    public Claims parse() {
+        return JwtUtil.parseJWT(SECRET, token);
+    }
+
+    /**
+     * 改造前JwtUtil.parseJWT的实现
+     */
+    @Benchmark
+    public Claims original() {
+        return Jwts.parser()
+                .setSigningKey(SECRET.getBytes(StandardCharsets.UTF_8))
+                .parseClaimsJws(token).getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtTokenUserInterceptorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.sky.interceptor;
+
+import com.sky.cache.JwtClaimsCache;
+import com.sky.cache.JwtRevocationList;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WebSocketHandshakeFilterTest {
+
+    private JwtProperties jwtProperties;
+
+    private JwtRevocationList jwtRevocationList;
+
+    private WebSocketHandshakeFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtProperties = new JwtProperties();
+        jwtProperties.setUserSecretKey("itheima");
+        jwtProperties.setUserTokenName("authentication");
+        jwtProperties.setAdminSecretKey("itcast");
+        jwtProperties.setAdminTokenName("token");
+        jwtRevocationList = mock(JwtRevocationList.class);
+
+        filter = new WebSocketHandshakeFilter();
+        ReflectionTestUtils.setField(filter, "jwtProperties", jwtProperties);
+        ReflectionTestUtils.setField(filter, "jwtClaimsCache", new JwtClaimsCache(jwtProperties));
+        ReflectionTestUtils.setField(filter, "jwtRevocationList", jwtRevocationList);
+    }
+
+    @Test
+    void acceptsOwnChannelWithTokenParam() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/order/7");
+        request.setParameter("token", userToken(7L));
+
+        MockFilterChain chain = doFilter(request, new MockHttpServletResponse());
+
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void rejectsOtherUsersChannel() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/order/8");
+        request.addHeader("authentication", userToken(7L));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        MockFilterChain chain = doFilter(request, response);
+
+        assertNull(chain.getRequest());
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    void rejectsMissingInvalidAndRevokedTokens() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(doFilter(new MockHttpServletRequest("GET", "/ws/order/7"), response).getRequest());
+        assertEquals(401, response.getStatus());
+
+        MockHttpServletRequest forged = new MockHttpServletRequest("GET", "/ws/order/7");
+        forged.setParameter("token", token("other-secret", JwtClaimsConstant.USER_ID, 7L));
+        response = new MockHttpServletResponse();
+        assertNull(doFilter(forged, response).getRequest());
+        assertEquals(401, response.getStatus());
+
+        when(jwtRevocationList.isRevoked(anyString())).thenReturn(true);
+        MockHttpServletRequest revoked = new MockHttpServletRequest("GET", "/ws/order/7");
+        revoked.setParameter("token", userToken(7L));
+        response = new MockHttpServletResponse();
+        assertNull(doFilter(revoked, response).getRequest());
+        assertEquals(401, response.getStatus());
+    }
+
+    @Test
+    void adminChannelRequiresAdminToken() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/admin/1");
+        request.setParameter("token", userToken(1L));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(doFilter(request, response).getRequest());
+        assertEquals(401, response.getStatus());
+
+        request = new MockHttpServletRequest("GET", "/ws/admin/1");
+        request.addHeader("token", token("itcast", JwtClaimsConstant.EMP_ID, 1L));
+        assertNotNull(doFilter(request, new MockHttpServletResponse()).getRequest());
+    }
+
+    private MockFilterChain doFilter(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return chain;
+    }
+
+    private static String userToken(Long userId) {
+        return token("itheima", JwtClaimsConstant.USER_ID, userId);
+    }
+
+    private static String token(String secretKey, String claim, Long id) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(claim, id);
+        return JwtUtil.createJWT(secretKey, 60000, claims);
+    }
+}
@@ -0,0 +1,117 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 菜品口味加载基准测试：逐个菜品查询口味（改造前） vs 一次查询所有菜品的口味（listWithFlavor）
+ * mapper使用桩实现，每次调用停顿roundTripMicros模拟一次数据库往返
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main DishFlavorLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DishFlavorLoadBenchmark {
+
+    @Param({"10", "50", "200"})
+    private int dishCount;
+
+    @Param({"200"})
+    private long roundTripMicros;
+
+    private DishMapper dishMapper;
+
+    private DishFlavorMapper dishFlavorMapper;
+
+    private DishServiceImpl dishService;
+
+    private Dish query;
+
+    @Setup
+    public void setUp() {
+        List<Dish> dishes = new ArrayList<>(dishCount);
+        List<DishFlavor> flavors = new ArrayList<>(dishCount * 2);
+        for (long i = 1; i <= dishCount; i++) {
+            dishes.add(Dish.builder().id(i).name("菜品" + i).categoryId(1L).build());
+            flavors.add(DishFlavor.builder().dishId(i).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\"]").build());
+            flavors.add(DishFlavor.builder().dishId(i).name("忌口").value("[\"不要葱\",\"不要蒜\"]").build());
+        }
+
+        dishMapper = mock(DishMapper.class);
+        when(dishMapper.list(any(Dish.class))).thenAnswer(invocation -> roundTrip(dishes));
+        dishFlavorMapper = mock(DishFlavorMapper.class);
+        when(dishFlavorMapper.getByDishIds(anyList())).thenAnswer(invocation -> roundTrip(flavors));
+        when(dishFlavorMapper.getByDishId(anyLong())).thenAnswer(invocation -> {
+            int index = ((Long) invocation.getArgument(0)).intValue() - 1;
+            return roundTrip(new ArrayList<>(flavors.subList(index * 2, index * 2 + 2)));
+        });
+
+        dishService = new DishServiceImpl();
+        ReflectionTestUtils.setField(dishService, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(dishService, "dishFlavorMapper", dishFlavorMapper);
+        query = Dish.builder().categoryId(1L).status(1).build();
+    }
+
+    /**
+     * 改造前的实现：每个菜品查询一次口味
+     */
+    @Benchmark
+    public List<DishVO> perDish() {
+        List<Dish> dishList = dishMapper.list(query);
+        List<DishVO> dishVOList = new ArrayList<>(dishList.size());
+        for (Dish d : dishList) {
+            DishVO dishVO = new DishVO();
+            BeanUtils.copyProperties(d, dishVO);
+            dishVO.setFlavors(dishFlavorMapper.getByDishId(d.getId()));
+            dishVOList.add(dishVO);
+        }
+        return dishVOList;
+    }
+
+    @Benchmark
+    public List<DishVO> batched() {
+        return dishService.listWithFlavor(query);
+    }
+
+    private <T> T roundTrip(T result) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DishFlavorLoadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DishServiceImplTest {
+
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private DishFlavorMapper dishFlavorMapper;
+    @InjectMocks
+    private DishServiceImpl dishService;
+
+    @Test
+    void listWithFlavorQueriesFlavorsOnceForAllDishes() {
+        List<Dish> dishes = new ArrayList<>();
+        List<DishFlavor> flavors = new ArrayList<>();
+        for (long i = 1; i <= 200; i++) {
+            dishes.add(Dish.builder().id(i).name("菜品" + i).build());
+            //单数菜品有口味，双数菜品没有
+            if (i % 2 == 1) {
+                flavors.add(DishFlavor.builder().dishId(i).name("辣度").value("[\"微辣\"]").build());
+            }
+        }
+        when(dishMapper.list(any(Dish.class))).thenReturn(dishes);
+        when(dishFlavorMapper.getByDishIds(anyList())).thenReturn(flavors);
+
+        List<DishVO> result = dishService.listWithFlavor(Dish.builder().categoryId(1L).build());
+
+        assertEquals(200, result.size());
+        for (DishVO dishVO : result) {
+            if (dishVO.getId() % 2 == 1) {
+                assertEquals(1, dishVO.getFlavors().size());
+                assertEquals(dishVO.getId(), dishVO.getFlavors().get(0).getDishId());
+            } else {
+                assertTrue(dishVO.getFlavors().isEmpty());
+            }
+        }
+        verify(dishFlavorMapper, times(1)).getByDishIds(anyList());
+        verify(dishFlavorMapper, never()).getByDishId(anyLong());
+    }
+
+    @Test
+    void listWithFlavorSkipsFlavorQueryWithoutDishes() {
+        when(dishMapper.list(any(Dish.class))).thenReturn(new ArrayList<>());
+
+        assertTrue(dishService.listWithFlavor(Dish.builder().categoryId(1L).build()).isEmpty());
+        verify(dishFlavorMapper, never()).getByDishIds(anyList());
+    }
+}
@@ -0,0 +1,247 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderTimeoutProperties;
+import com.sky.properties.PaymentProperties;
+import com.sky.service.ShoppingCartService;
+import com.sky.task.OrderTimeoutQueue;
+import com.sky.utils.SnowflakeIdGenerator;
+import com.sky.utils.WeChatPayUtil;
+import com.sky.websocket.WebSocketEventDispatcher;
+import com.sky.websocket.event.NewOrderEvent;
+import com.sky.websocket.event.PaymentSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    private static final String NUMBER = "1715000000000123456";
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Mock
+    private WebSocketEventDispatcher webSocketEventDispatcher;
+    @Mock
+    private WeChatPayUtil weChatPayUtil;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+    @Mock
+    private AddressBookMapper addressBookMapper;
+    @Mock
+    private ShoppingCartService shoppingCartService;
+    @Mock
+    private ProductSnapshotCache productSnapshotCache;
+    @Mock
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Spy
+    private OrderTimeoutProperties orderTimeoutProperties = new OrderTimeoutProperties();
+    @Spy
+    private PaymentProperties paymentProperties = new PaymentProperties();
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        paymentProperties.setMode("real");
+    }
+
+    @Test
+    void notifyAfterTimeoutCancelRefundsWithoutResurrectingOrder() throws Exception {
+        // 超时任务已把订单改为已取消，支付状态仍为未支付，这时才收到支付成功回调
+        when(orderMapper.updatePaySuccess(eq(NUMBER), eq(Orders.PENDING_PAYMENT), eq(Orders.TO_BE_CONFIRMED),
+                eq(Orders.PAID), any(LocalDateTime.class))).thenReturn(0);
+        when(orderMapper.getByNumber(NUMBER)).thenReturn(order(Orders.CANCELLED, Orders.UN_PAID));
+
+        orderService.paySuccess(NUMBER);
+
+        verify(weChatPayUtil).refund(NUMBER, NUMBER, new BigDecimal("0.01"), new BigDecimal("0.01"));
+        verify(orderMapper).updatePayStatus(NUMBER, Orders.CANCELLED, Orders.UN_PAID, Orders.REFUND);
+        verify(webSocketEventDispatcher, never()).dispatch(any());
+        verify(orderTimeoutQueue, never()).remove(anyLong());
+        assertEquals(1, meterRegistry.counter("sky.payment.paid.after.cancel").count());
+    }
+
+    @Test
+    void failedRefundIsRetriedByNotifyInbox() throws Exception {
+        when(orderMapper.updatePaySuccess(eq(NUMBER), eq(Orders.PENDING_PAYMENT), eq(Orders.TO_BE_CONFIRMED),
+                eq(Orders.PAID), any(LocalDateTime.class))).thenReturn(0);
+        when(orderMapper.getByNumber(NUMBER)).thenReturn(order(Orders.CANCELLED, Orders.UN_PAID));
+        when(weChatPayUtil.refund(anyString(), anyString(), any(BigDecimal.class), any(BigDecimal.class)))
+                .thenThrow(new RuntimeException("timeout"));
+
+        // 抛出异常，回调不会被确认；支付状态不变，重试时会再次退款
+        assertThrows(OrderBusinessException.class, () -> orderService.paySuccess(NUMBER));
+        verify(orderMapper, never()).updatePayStatus(anyString(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void duplicateNotifyForRefundedOrderIsIgnored() throws Exception {
+        when(orderMapper.updatePaySuccess(eq(NUMBER), eq(Orders.PENDING_PAYMENT), eq(Orders.TO_BE_CONFIRMED),
+                eq(Orders.PAID), any(LocalDateTime.class))).thenReturn(0);
+        when(orderMapper.getByNumber(NUMBER)).thenReturn(order(Orders.CANCELLED, Orders.REFUND));
+
+        orderService.paySuccess(NUMBER);
+
+        verify(weChatPayUtil, never()).refund(anyString(), anyString(), any(BigDecimal.class), any(BigDecimal.class));
+        verify(webSocketEventDispatcher, never()).dispatch(any());
+    }
+
+    @Test
+    void pendingOrderIsPaidAndPushed() throws Exception {
+        when(orderMapper.updatePaySuccess(eq(NUMBER), eq(Orders.PENDING_PAYMENT), eq(Orders.TO_BE_CONFIRMED),
+                eq(Orders.PAID), any(LocalDateTime.class))).thenReturn(1);
+        when(orderMapper.getByNumber(NUMBER)).thenReturn(order(Orders.TO_BE_CONFIRMED, Orders.PAID));
+
+        orderService.paySuccess(NUMBER);
+
+        verify(orderTimeoutQueue).remove(1L);
+        verify(webSocketEventDispatcher).dispatch(any(PaymentSucceededEvent.class));
+        verify(webSocketEventDispatcher).dispatch(any(NewOrderEvent.class));
+        verify(weChatPayUtil, never()).refund(anyString(), anyString(), any(BigDecimal.class), any(BigDecimal.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchLocksAndUpdatesPendingOrdersInOneStatement() {
+        when(transactionTemplate.execute(any(TransactionCallback.class)))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        Orders first = order(1L, "100", Orders.PENDING_PAYMENT, Orders.UN_PAID);
+        Orders second = order(2L, "200", Orders.PENDING_PAYMENT, Orders.UN_PAID);
+        when(orderMapper.getByNumbersAndStatusForUpdate(Arrays.asList("100", "200", "300"), Orders.PENDING_PAYMENT))
+                .thenReturn(Arrays.asList(first, second));
+
+        // 300不是待付款状态（重复回调或已取消），本批不处理；同一批中的重复订单号只查询一次
+        List<String> remaining = orderService.paySuccessBatch(Arrays.asList("100", "200", "300", "100"));
+
+        assertEquals(Collections.singletonList("300"), remaining);
+        verify(orderMapper).updatePaySuccessBatch(eq(Arrays.asList(1L, 2L)), eq(Orders.PENDING_PAYMENT),
+                eq(Orders.TO_BE_CONFIRMED), eq(Orders.PAID), any(LocalDateTime.class));
+        verify(orderMapper, never()).updatePaySuccess(anyString(), anyInt(), anyInt(), anyInt(), any(LocalDateTime.class));
+        verify(orderTimeoutQueue).remove(1L);
+        verify(orderTimeoutQueue).remove(2L);
+        verify(webSocketEventDispatcher, times(2)).dispatch(any(PaymentSucceededEvent.class));
+        verify(webSocketEventDispatcher, times(2)).dispatch(any(NewOrderEvent.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submitRemovesOnlyTheCartItemsThatWereOrdered() {
+        BaseContext.setCurrentId(2L);
+        try {
+            doAnswer(invocation -> {
+                ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+                return null;
+            }).when(transactionTemplate).executeWithoutResult(any(Consumer.class));
+            when(addressBookMapper.getById(3L)).thenReturn(new AddressBook());
+            List<ShoppingCart> cart = Collections.singletonList(ShoppingCart.builder()
+                    .id(10L).dishId(1L).number(2).amount(new BigDecimal("28")).build());
+            when(shoppingCartService.showShoppingCart()).thenReturn(cart);
+            when(productSnapshotCache.getDish(1L)).thenReturn(ProductSnapshotCache.ProductSnapshot.builder()
+                    .id(1L).price(new BigDecimal("28")).status(1).build());
+            when(snowflakeIdGenerator.nextId()).thenReturn(1L);
+
+            OrdersSubmitDTO dto = new OrdersSubmitDTO();
+            dto.setAddressBookId(3L);
+            dto.setPackAmount(1);
+            dto.setTablewareNumber(1);
+            orderService.submitOrder(dto);
+
+            // 只移除下单时读取的购物车数据，不按用户清空，下单期间新加入的商品不会丢失
+            verify(shoppingCartService).removeOrdered(cart);
+            verify(shoppingCartService, never()).cleanShoppingCart();
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+    }
+
+    @Test
+    void submitRejectsProductsStoppedOrDeletedAfterAddingToCart() {
+        BaseContext.setCurrentId(2L);
+        try {
+            when(addressBookMapper.getById(3L)).thenReturn(new AddressBook());
+            when(shoppingCartService.showShoppingCart()).thenReturn(Arrays.asList(
+                    ShoppingCart.builder().id(10L).dishId(1L).number(1).amount(new BigDecimal("28")).build(),
+                    ShoppingCart.builder().id(11L).setmealId(5L).number(1).amount(new BigDecimal("58")).build()));
+            when(productSnapshotCache.getDish(1L)).thenReturn(ProductSnapshotCache.ProductSnapshot.builder()
+                    .id(1L).price(new BigDecimal("28")).status(1).build());
+            OrdersSubmitDTO dto = new OrdersSubmitDTO();
+            dto.setAddressBookId(3L);
+
+            // 套餐已停售，不能再按购物车中的价格下单
+            when(productSnapshotCache.getSetmeal(5L)).thenReturn(ProductSnapshotCache.ProductSnapshot.builder()
+                    .id(5L).price(new BigDecimal("58")).status(0).build());
+            assertThrows(ShoppingCartBusinessException.class, () -> orderService.submitOrder(dto));
+
+            // 套餐已删除
+            when(productSnapshotCache.getSetmeal(5L)).thenReturn(null);
+            assertThrows(ShoppingCartBusinessException.class, () -> orderService.submitOrder(dto));
+
+            verify(orderMapper, never()).insert(any(Orders.class));
+            verify(shoppingCartService, never()).removeOrdered(any());
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+    }
+
+    private static Orders order(Integer status, Integer payStatus) {
+        return order(1L, NUMBER, status, payStatus);
+    }
+
+    private static Orders order(Long id, String number, Integer status, Integer payStatus) {
+        Orders order = new Orders();
+        order.setId(id);
+        order.setNumber(number);
+        order.setUserId(2L);
+        order.setStatus(status);
+        order.setPayStatus(payStatus);
+        order.setAmount(new BigDecimal("58.50"));
+        return order;
+    }
+}
@@ -0,0 +1,107 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.properties.ShoppingCartProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RedisShoppingCartServiceImplTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ProductSnapshotCache productSnapshotCache;
+    @Spy
+    private ShoppingCartProperties shoppingCartProperties = new ShoppingCartProperties();
+    @InjectMocks
+    private RedisShoppingCartServiceImpl shoppingCartService;
+
+    @BeforeEach
+    void setUp() {
+        shoppingCartProperties.setSnapshotEnabled(false);
+        BaseContext.setCurrentId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void failedSnapshotLookupWritesNothing() {
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setDishId(1L);
+        when(productSnapshotCache.getDish(1L)).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> shoppingCartService.addShoppingCart(dto));
+
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    void stoppedProductCannotBeAdded() {
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setDishId(1L);
+        when(productSnapshotCache.getDish(1L)).thenReturn(ProductSnapshotCache.ProductSnapshot.builder()
+                .id(1L).name("宫保鸡丁").price(new BigDecimal("28")).status(0).build());
+
+        assertThrows(ShoppingCartBusinessException.class, () -> shoppingCartService.addShoppingCart(dto));
+
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    void countAndItemAreWrittenByOneScript() {
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setDishId(1L);
+        dto.setDishFlavor("微辣");
+        when(productSnapshotCache.getDish(1L)).thenReturn(ProductSnapshotCache.ProductSnapshot.builder()
+                .id(1L).name("宫保鸡丁").price(new BigDecimal("28")).status(1).build());
+
+        shoppingCartService.addShoppingCart(dto);
+
+        String ttl = String.valueOf(shoppingCartProperties.getRedisTtl());
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(Arrays.asList("shopping_cart:7", "shopping_cart_item:7")),
+                eq("d1:微辣"), anyString(), eq(ttl));
+        verify(stringRedisTemplate, never()).opsForHash();
+    }
+
+    @Test
+    void orderedItemsAreSubtractedInsteadOfDeletingTheCart() {
+        shoppingCartService.removeOrdered(Arrays.asList(
+                ShoppingCart.builder().dishId(1L).dishFlavor("微辣").number(2).build(),
+                ShoppingCart.builder().setmealId(5L).number(1).build()));
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(Arrays.asList("shopping_cart:7", "shopping_cart_item:7")),
+                eq("d1:微辣"), eq("2"), eq("s5"), eq("1"));
+        verify(stringRedisTemplate, never()).delete(anyCollection());
+    }
+}
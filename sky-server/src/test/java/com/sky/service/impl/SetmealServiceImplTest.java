@@ -0,0 +1,111 @@
+package com.sky.service.impl;
+
+import com.sky.cache.MenuCache;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.SetmealDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.SetmealDish;
+import com.sky.exception.DeletionNotAllowedException;
+import com.sky.exception.SetmealEnableFailedException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SetmealServiceImplTest {
+
+    @Mock
+    private SetmealMapper setmealMapper;
+    @Mock
+    private SetmealDishMapper setmealDishMapper;
+    @Mock
+    private DishMapper dishMapper;
+    @Mock
+    private ProductSnapshotCache productSnapshotCache;
+    @Mock
+    private MenuCache menuCache;
+    @InjectMocks
+    private SetmealServiceImpl setmealService;
+
+    @Test
+    void stoppingSetmealRefreshesSnapshotAndCategoryCache() {
+        when(setmealMapper.getSetmealById(5L)).thenReturn(Setmeal.builder().id(5L).categoryId(13L).build());
+
+        setmealService.startOrStop(StatusConstant.DISABLE, 5L);
+
+        verify(setmealMapper).updateById(Setmeal.builder().id(5L).status(StatusConstant.DISABLE).build());
+        verify(productSnapshotCache).refreshSetmealsAfterCommit(Collections.singletonList(5L));
+        verify(menuCache).evictAfterCommit(Collections.singletonList("setmeal_13"));
+    }
+
+    @Test
+    void updateEvictsOldAndNewCategoryAndSetmealDishes() {
+        when(setmealMapper.getSetmealById(5L)).thenReturn(Setmeal.builder().id(5L).categoryId(13L).build());
+        SetmealDTO dto = new SetmealDTO();
+        dto.setId(5L);
+        dto.setCategoryId(15L);
+
+        setmealService.updateWithSetmeal(dto);
+
+        verify(menuCache).evictAfterCommit(Arrays.asList("setmeal_13", "setmeal_15", "setmealDish_5"));
+        verify(productSnapshotCache).refreshSetmealsAfterCommit(Collections.singletonList(5L));
+    }
+
+    @Test
+    void setmealWithStoppedDishCannotBeStarted() {
+        when(setmealDishMapper.getSetmealId(5L)).thenReturn(Arrays.asList(
+                SetmealDish.builder().dishId(1L).build(), SetmealDish.builder().dishId(2L).build()));
+        when(dishMapper.getByIds(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                Dish.builder().id(1L).status(StatusConstant.ENABLE).build(),
+                Dish.builder().id(2L).status(StatusConstant.DISABLE).build()));
+
+        assertThrows(SetmealEnableFailedException.class,
+                () -> setmealService.startOrStop(StatusConstant.ENABLE, 5L));
+        verify(setmealMapper, never()).updateById(any(Setmeal.class));
+        verify(productSnapshotCache, never()).refreshSetmealsAfterCommit(anyCollection());
+    }
+
+    @Test
+    void deletingSetmealsRefreshesSnapshots() {
+        List<Long> ids = Arrays.asList(5L, 6L);
+        when(setmealMapper.getByIds(ids)).thenReturn(Arrays.asList(
+                Setmeal.builder().id(5L).categoryId(13L).status(StatusConstant.DISABLE).build(),
+                Setmeal.builder().id(6L).categoryId(13L).status(StatusConstant.DISABLE).build()));
+
+        setmealService.deleteBatch(ids);
+
+        verify(menuCache).evictAfterCommit(Arrays.asList("setmeal_13", "setmealDish_5", "setmealDish_6"));
+        verify(setmealMapper).deleteByIds(ids);
+        verify(setmealDishMapper).deleteBySetmealIds(ids);
+        verify(productSnapshotCache).refreshSetmealsAfterCommit(ids);
+    }
+
+    @Test
+    void setmealOnSaleCannotBeDeleted() {
+        List<Long> ids = Collections.singletonList(5L);
+        when(setmealMapper.getByIds(ids)).thenReturn(Collections.singletonList(
+                Setmeal.builder().id(5L).status(StatusConstant.ENABLE).build()));
+
+        assertThrows(DeletionNotAllowedException.class, () -> setmealService.deleteBatch(ids));
+        verify(setmealMapper, never()).deleteByIds(ids);
+        verify(productSnapshotCache, never()).refreshSetmealsAfterCommit(anyCollection());
+    }
+}
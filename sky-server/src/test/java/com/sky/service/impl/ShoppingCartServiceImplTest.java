@@ -0,0 +1,83 @@
+package com.sky.service.impl;
+
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.mapper.ShoppingCartMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShoppingCartServiceImplTest {
+
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+    @Mock
+    private ProductSnapshotCache productSnapshotCache;
+    @InjectMocks
+    private ShoppingCartServiceImpl shoppingCartService;
+
+    private final List<ShoppingCart> ordered = Arrays.asList(
+            ShoppingCart.builder().id(10L).dishId(1L).number(2).build(),
+            ShoppingCart.builder().id(11L).setmealId(5L).number(1).build());
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void deletedProductCannotBeAdded() {
+        ShoppingCartDTO dto = new ShoppingCartDTO();
+        dto.setSetmealId(5L);
+        when(shoppingCartMapper.list(any(ShoppingCart.class))).thenReturn(new ArrayList<>());
+        when(productSnapshotCache.getSetmeal(5L)).thenReturn(null);
+
+        assertThrows(ShoppingCartBusinessException.class, () -> shoppingCartService.addShoppingCart(dto));
+        verify(shoppingCartMapper, never()).insert(any(ShoppingCart.class));
+    }
+
+    @Test
+    void orderedRowsAreDeletedByIdNotByUser() {
+        when(shoppingCartMapper.deleteOrdered(7L, ordered)).thenReturn(2);
+
+        shoppingCartService.removeOrdered(ordered);
+
+        verify(shoppingCartMapper, never()).deleteByUserId(anyLong());
+        verify(shoppingCartMapper, never()).subtractOrdered(7L, ordered);
+    }
+
+    @Test
+    void rowsIncreasedDuringSubmitKeepTheExtraQuantity() {
+        // 下单期间id=10的数量又加了1，按id和数量删除时不会删掉它
+        when(shoppingCartMapper.deleteOrdered(7L, ordered)).thenReturn(1);
+
+        shoppingCartService.removeOrdered(ordered);
+
+        verify(shoppingCartMapper).subtractOrdered(7L, ordered);
+        verify(shoppingCartMapper, never()).deleteByUserId(anyLong());
+    }
+}
@@ -0,0 +1,46 @@
+package com.sky.task;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderNumberTaskTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Test
+    void savesLastTimestampPlusLease() {
+        OrderNumberProperties properties = new OrderNumberProperties();
+        properties.setWorkerId(5L);
+        long lastTimestamp = System.currentTimeMillis() + 30_000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, properties.getEpoch(), lastTimestamp);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        OrderNumberTask task = new OrderNumberTask();
+        ReflectionTestUtils.setField(task, "snowflakeIdGenerator", generator);
+        ReflectionTestUtils.setField(task, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(task, "orderNumberProperties", properties);
+        task.save();
+
+        ArgumentCaptor<String> saved = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).set(eq(OrderNumberTask.HIGH_WATER_MARK_KEY + 5), saved.capture());
+        //时钟落后于已使用的时间戳时，以已使用的时间戳为准再加预留时间
+        assertTrue(Long.parseLong(saved.getValue()) > lastTimestamp + properties.getHighWaterMarkLease());
+    }
+}
@@ -0,0 +1,108 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderTimeoutProperties;
+import com.sky.websocket.WebSocketEventDispatcher;
+import com.sky.websocket.event.OrderCancelledEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderTaskTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Spy
+    private OrderTimeoutProperties orderTimeoutProperties = new OrderTimeoutProperties();
+    @Mock
+    private WebSocketEventDispatcher webSocketEventDispatcher;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @InjectMocks
+    private OrderTask orderTask;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void notifiesOnlyOrdersLockedByThisBatch() {
+        // 订单2已被另一方取消或已支付，不在本次锁定的订单中
+        when(orderMapper.getByIdsAndStatusForUpdate(Arrays.asList(1L, 2L, 3L), Orders.PENDING_PAYMENT))
+                .thenReturn(Arrays.asList(order(1L), order(3L)));
+
+        orderTask.cancelTimeoutOrders(Arrays.asList(1L, 2L, 3L));
+
+        verify(orderMapper).cancelBatch(eq(Arrays.asList(1L, 3L)), eq(Orders.PENDING_PAYMENT), eq(Orders.CANCELLED),
+                any(), any());
+        ArgumentCaptor<OrderCancelledEvent> events = ArgumentCaptor.forClass(OrderCancelledEvent.class);
+        verify(webSocketEventDispatcher, times(2)).dispatch(events.capture());
+        assertEquals(1L, events.getAllValues().get(0).getOrderId());
+        assertEquals(3L, events.getAllValues().get(1).getOrderId());
+    }
+
+    @Test
+    void nothingLockedMeansNoUpdateAndNoNotification() {
+        when(orderMapper.getByIdsAndStatusForUpdate(Collections.singletonList(1L), Orders.PENDING_PAYMENT))
+                .thenReturn(Collections.emptyList());
+
+        orderTask.cancelTimeoutOrders(Collections.singletonList(1L));
+
+        verify(orderMapper, never()).cancelBatch(any(), any(), any(), any(), any());
+        verify(webSocketEventDispatcher, never()).dispatch(any());
+    }
+
+    @Test
+    void failedBatchIsPutBackIntoTheQueue() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+        when(orderTimeoutQueue.pollExpired(anyLong(), anyInt())).thenReturn(ids);
+        when(orderMapper.getByIdsAndStatusForUpdate(ids, Orders.PENDING_PAYMENT))
+                .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        long before = System.currentTimeMillis();
+        orderTask.consumeTimeoutQueue();
+
+        ArgumentCaptor<Long> deadline = ArgumentCaptor.forClass(Long.class);
+        verify(orderTimeoutQueue).addAll(eq(ids), deadline.capture());
+        assertTrue(deadline.getValue() >= before + orderTimeoutProperties.getRetryDelay());
+        verify(orderTimeoutQueue, times(1)).pollExpired(anyLong(), anyInt());
+    }
+
+    private static Orders order(Long id) {
+        Orders order = new Orders();
+        order.setId(id);
+        order.setUserId(10L);
+        order.setNumber("N" + id);
+        return order;
+    }
+}
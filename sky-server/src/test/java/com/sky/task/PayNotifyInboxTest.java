@@ -0,0 +1,210 @@
+package com.sky.task;
+
+import com.sky.properties.PaymentProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PayNotifyInboxTest {
+
+    private static final String RETRY_KEY = "pay_notify_retry:node-1";
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    private ZSetOperations<String, String> zSetOperations;
+
+    private StringRedisConnection connection;
+
+    private PaymentProperties paymentProperties;
+
+    private PayNotifyInbox payNotifyInbox;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        streamOperations = mock(StreamOperations.class);
+        zSetOperations = mock(ZSetOperations.class);
+        connection = mock(StringRedisConnection.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        when(streamOperations.pending(anyString(), any(Consumer.class), any(Range.class), anyLong()))
+                .thenReturn(new PendingMessages("pay_notify_group", Collections.emptyList()));
+
+        paymentProperties = new PaymentProperties();
+        paymentProperties.getNotify().setConsumer("node-1");
+        payNotifyInbox = new PayNotifyInbox();
+        ReflectionTestUtils.setField(payNotifyInbox, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(payNotifyInbox, "paymentProperties", paymentProperties);
+        payNotifyInbox.init();
+    }
+
+    @Test
+    void retryDelayGrowsExponentiallyUpToMax() {
+        long[] expected = {1000, 2000, 4000, 8000, 16000, 30000, 30000};
+        for (int attempts = 1; attempts <= expected.length; attempts++) {
+            assertEquals(expected[attempts - 1], payNotifyInbox.scheduleRetry(RecordId.of("1-0"), attempts));
+        }
+        // 第10次失败才转入死信，前9次的退避累计超过2分钟，短暂的数据库或锁故障不会耗尽重试次数
+        long total = 0;
+        for (int attempts = 1; attempts < paymentProperties.getNotify().getMaxAttempts(); attempts++) {
+            total += payNotifyInbox.scheduleRetry(RecordId.of("1-0"), attempts);
+        }
+        assertTrue(total >= 120_000, "累计退避" + total + "ms");
+        assertTrue(paymentProperties.getNotify().getMaxRetryBackoff() < paymentProperties.getNotify().getClaimIdleTime());
+    }
+
+    @Test
+    void retryIsScheduledAtNowPlusDelay() {
+        long before = System.currentTimeMillis();
+        payNotifyInbox.scheduleRetry(RecordId.of("1-0"), 3);
+
+        ArgumentCaptor<Double> score = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).add(eq(RETRY_KEY), eq("1-0"), score.capture());
+        assertTrue(score.getValue() >= before + 4000 && score.getValue() <= System.currentTimeMillis() + 4000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriesNotYetDueAreNotReread() {
+        when(zSetOperations.rangeByScore(eq(RETRY_KEY), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenReturn(Collections.emptySet());
+
+        payNotifyInbox.read();
+
+        // 不再从"0"重读全部未确认的消息，只读取新消息
+        verify(connection, never()).xClaim(anyString(), anyString(), anyString(), any(RedisStreamCommands.XClaimOptions.class));
+        verify(streamOperations, never()).read(any(Consumer.class), any(StreamReadOptions.class),
+                eq(StreamOffset.create("pay_notify_inbox", ReadOffset.from("0"))));
+        verify(streamOperations).read(any(Consumer.class), any(StreamReadOptions.class),
+                eq(StreamOffset.create("pay_notify_inbox", ReadOffset.lastConsumed())));
+    }
+
+    @Test
+    void dueRetriesAreClaimedAndAcknowledgedOnesDropped() {
+        when(zSetOperations.rangeByScore(eq(RETRY_KEY), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenReturn(new LinkedHashSet<>(Arrays.asList("1-0", "2-0")));
+        StringRecord record = StreamRecords.string(Collections.singletonMap(PayNotifyInbox.OUT_TRADE_NO, "100"))
+                .withStreamKey("pay_notify_inbox")
+                .withId(RecordId.of("1-0"));
+        ArgumentCaptor<RedisStreamCommands.XClaimOptions> options = ArgumentCaptor.forClass(RedisStreamCommands.XClaimOptions.class);
+        when(connection.xClaim(eq("pay_notify_inbox"), eq("pay_notify_group"), eq("node-1"), options.capture()))
+                .thenReturn(Collections.singletonList(record));
+
+        List<MapRecord<String, Object, Object>> records = payNotifyInbox.read();
+
+        assertEquals(1, records.size());
+        assertEquals("100", records.get(0).getValue().get(PayNotifyInbox.OUT_TRADE_NO));
+        assertEquals(Arrays.asList("1-0", "2-0"), Arrays.asList(options.getValue().getIdsAsStringArray()));
+        assertEquals(Duration.ZERO, options.getValue().getMinIdleTime());
+        // 2-0已被其他节点处理并确认，不再重试
+        verify(zSetOperations).remove(RETRY_KEY, "2-0");
+    }
+
+    @Test
+    void restartRecoversOwnPendingAcrossPages() {
+        paymentProperties.getNotify().setBatchSize(2);
+        when(streamOperations.pending(eq("pay_notify_inbox"), any(Consumer.class), any(Range.class), anyLong()))
+                .thenReturn(page("1-0", "2-0"), page("2-0", "3-0"), page("3-0"));
+
+        payNotifyInbox.init();
+
+        for (String id : Arrays.asList("1-0", "2-0", "3-0")) {
+            verify(zSetOperations).addIfAbsent(eq(RETRY_KEY), eq(id), anyDouble());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void acknowledgeDeletesOnlyAcknowledgedEntries() {
+        when(stringRedisTemplate.opsForHash()).thenReturn(mock(HashOperations.class));
+        RecordId done = RecordId.of("1-0");
+
+        payNotifyInbox.acknowledge(Collections.singletonList(done));
+
+        verify(streamOperations).acknowledge("pay_notify_inbox", "pay_notify_group", done);
+        verify(streamOperations).delete("pay_notify_inbox", done);
+        // 按长度裁剪会删掉还没确认的回调
+        verify(streamOperations, never()).trim(anyString(), anyLong());
+        verify(streamOperations, never()).trim(anyString(), anyLong(), anyBoolean());
+        verify(zSetOperations).remove(RETRY_KEY, "1-0");
+    }
+
+    @Test
+    void claimsOnlyOtherConsumersIdleEntries() {
+        List<PendingMessage> messages = Arrays.asList(
+                pendingMessage("1-0", "node-2", Duration.ofMinutes(2)),
+                pendingMessage("2-0", "node-2", Duration.ofSeconds(1)),
+                pendingMessage("3-0", "node-1", Duration.ofMinutes(2)));
+        when(streamOperations.pending(eq("pay_notify_inbox"), eq("pay_notify_group"), any(Range.class), anyLong()))
+                .thenReturn(new PendingMessages("pay_notify_group", messages));
+        ArgumentCaptor<RedisStreamCommands.XClaimOptions> options = ArgumentCaptor.forClass(RedisStreamCommands.XClaimOptions.class);
+        when(connection.xClaimJustId(eq("pay_notify_inbox"), eq("pay_notify_group"), eq("node-1"), options.capture()))
+                .thenReturn(Collections.singletonList(RecordId.of("1-0")));
+
+        assertEquals(1, payNotifyInbox.claimIdle());
+
+        // 不使用redis 6.2的XAUTOCLAIM；带最小空闲时间认领，其他节点先认领时不会重复认领
+        assertEquals(Collections.singletonList("1-0"), Arrays.asList(options.getValue().getIdsAsStringArray()));
+        assertEquals(Duration.ofMillis(paymentProperties.getNotify().getClaimIdleTime()), options.getValue().getMinIdleTime());
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+        verify(zSetOperations).add(eq(RETRY_KEY), eq("1-0"), anyDouble());
+    }
+
+    private static PendingMessage pendingMessage(String id, String consumer, Duration idle) {
+        return new PendingMessage(RecordId.of(id), Consumer.from("pay_notify_group", consumer), idle, 1);
+    }
+
+    private static PendingMessages page(String... ids) {
+        List<PendingMessage> messages = new ArrayList<>();
+        for (String id : ids) {
+            messages.add(pendingMessage(id, "node-1", Duration.ofSeconds(1)));
+        }
+        return new PendingMessages("pay_notify_group", messages);
+    }
+}
@@ -0,0 +1,136 @@
+package com.sky.task;
+
+import com.sky.properties.PaymentProperties;
+import com.sky.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PayNotifyTaskTest {
+
+    @Mock
+    private PayNotifyInbox payNotifyInbox;
+    @Mock
+    private OrderService orderService;
+    @Spy
+    private PaymentProperties paymentProperties = new PaymentProperties();
+    @InjectMocks
+    private PayNotifyTask payNotifyTask;
+
+    @BeforeEach
+    void setUp() {
+        paymentProperties.getNotify().setMaxAttempts(3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void appliesBatchInOnePass() {
+        MapRecord<String, Object, Object> first = record("1-0", "100");
+        MapRecord<String, Object, Object> second = record("2-0", "200");
+        when(payNotifyInbox.read()).thenReturn(Arrays.asList(first, second));
+        when(orderService.paySuccessBatch(anyList())).thenReturn(Collections.emptyList());
+
+        payNotifyTask.processPayNotify();
+
+        ArgumentCaptor<List<String>> numbers = ArgumentCaptor.forClass(List.class);
+        verify(orderService).paySuccessBatch(numbers.capture());
+        assertEquals(Arrays.asList("100", "200"), numbers.getValue());
+        verify(orderService, never()).paySuccess(anyString());
+        assertEquals(Arrays.asList(first.getId(), second.getId()), acknowledged());
+    }
+
+    @Test
+    void remainingRecordsAreProcessedOneByOne() {
+        MapRecord<String, Object, Object> paid = record("1-0", "100");
+        MapRecord<String, Object, Object> duplicate = record("2-0", "200");
+        when(payNotifyInbox.read()).thenReturn(Arrays.asList(paid, duplicate));
+        when(orderService.paySuccessBatch(anyList())).thenReturn(Collections.singletonList("200"));
+
+        payNotifyTask.processPayNotify();
+
+        verify(orderService).paySuccess("200");
+        verify(orderService, never()).paySuccess("100");
+        assertEquals(Arrays.asList(paid.getId(), duplicate.getId()), acknowledged());
+    }
+
+    @Test
+    void acknowledgesOnlySucceededRecords() {
+        MapRecord<String, Object, Object> ok = record("1-0", "100");
+        MapRecord<String, Object, Object> bad = record("2-0", "200");
+        when(payNotifyInbox.read()).thenReturn(Arrays.asList(ok, bad));
+        //整批失败，逐条处理
+        when(orderService.paySuccessBatch(anyList())).thenThrow(new IllegalStateException("deadlock"));
+        lenient().doThrow(new IllegalStateException("db down")).when(orderService).paySuccess("200");
+        when(payNotifyInbox.recordFailure(bad.getId())).thenReturn(1L);
+
+        payNotifyTask.processPayNotify();
+
+        assertEquals(Collections.singletonList(ok.getId()), acknowledged());
+        verify(payNotifyInbox).scheduleRetry(bad.getId(), 1L);
+        verify(payNotifyInbox, never()).deadLetter(any(), anyLong(), anyString());
+    }
+
+    @Test
+    void deadLettersAfterMaxAttempts() {
+        MapRecord<String, Object, Object> bad = record("2-0", "200");
+        when(payNotifyInbox.read()).thenReturn(Collections.singletonList(bad));
+        when(orderService.paySuccessBatch(anyList())).thenReturn(Collections.singletonList("200"));
+        doThrow(new IllegalStateException("db down")).when(orderService).paySuccess("200");
+        when(payNotifyInbox.recordFailure(bad.getId())).thenReturn(3L);
+
+        payNotifyTask.processPayNotify();
+
+        verify(payNotifyInbox).deadLetter(eq(bad), eq(3L), eq("db down"));
+        assertEquals(Collections.singletonList(bad.getId()), acknowledged());
+    }
+
+    @Test
+    void claimFailureDoesNotStopProcessing() {
+        when(payNotifyInbox.claimIdle()).thenThrow(new IllegalStateException("connection reset"));
+
+        payNotifyTask.claimIdle();
+        // 未到认领间隔时不再认领
+        payNotifyTask.claimIdle();
+
+        verify(payNotifyInbox).claimIdle();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<RecordId> acknowledged() {
+        ArgumentCaptor<List<RecordId>> captor = ArgumentCaptor.forClass(List.class);
+        verify(payNotifyInbox).acknowledge(captor.capture());
+        return captor.getValue();
+    }
+
+    private static MapRecord<String, Object, Object> record(String id, String outTradeNo) {
+        return StreamRecords.<String, Object, Object>mapBacked(
+                Collections.singletonMap(PayNotifyInbox.OUT_TRADE_NO, outTradeNo))
+                .withStreamKey("pay_notify_inbox")
+                .withId(RecordId.of(id));
+    }
+}
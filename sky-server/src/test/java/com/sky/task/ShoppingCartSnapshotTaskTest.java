@@ -0,0 +1,64 @@
+package com.sky.task;
+
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.impl.RedisShoppingCartServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShoppingCartSnapshotTaskTest {
+
+    @Mock
+    private RedisShoppingCartServiceImpl redisShoppingCartService;
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+    @Spy
+    private ShoppingCartProperties shoppingCartProperties = new ShoppingCartProperties();
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @InjectMocks
+    private ShoppingCartSnapshotTask shoppingCartSnapshotTask;
+
+    @Test
+    void failedSnapshotKeepsDirtyMarker() {
+        shoppingCartProperties.setSnapshotEnabled(true);
+        when(redisShoppingCartService.dirtyUsers(anyInt())).thenReturn(Arrays.asList(1L, 2L));
+        when(redisShoppingCartService.listByUserId(any())).thenReturn(Collections.emptyList());
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().doThrow(new DataAccessResourceFailureException("db down")).when(shoppingCartMapper).deleteByUserId(2L);
+
+        shoppingCartSnapshotTask.snapshot();
+
+        //标记在读取购物车之前移除，失败的用户重新标记
+        InOrder inOrder = inOrder(redisShoppingCartService);
+        inOrder.verify(redisShoppingCartService).clearDirty(2L);
+        inOrder.verify(redisShoppingCartService).listByUserId(2L);
+        inOrder.verify(redisShoppingCartService).markDirty(2L);
+        verify(redisShoppingCartService, never()).markDirty(1L);
+    }
+}
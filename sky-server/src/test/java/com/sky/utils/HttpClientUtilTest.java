@@ -0,0 +1,180 @@
+package com.sky.utils;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地http桩服务对比共享连接池和每次请求新建客户端（改造前）
+ * 桩服务按客户端端口统计建立的TCP连接数，支持长连接，每个响应一次写出
+ */
+@Slf4j
+class HttpClientUtilTest {
+
+    private static final int REQUESTS = 500;
+
+    private static final int THREADS = 16;
+
+    private static final byte[] BODY = "{\"openid\":\"o6_bmjrPTlm6_2sgVt7hMZOPfL2M\"}".getBytes(StandardCharsets.UTF_8);
+
+    private ServerSocket server;
+
+    private ExecutorService serverExecutor;
+
+    private String url;
+
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // httpclient的debug日志逐字节打印报文，会淹没连接建立的耗时
+        ((Logger) LoggerFactory.getLogger("org.apache.http")).setLevel(Level.INFO);
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverExecutor = Executors.newCachedThreadPool();
+        serverExecutor.execute(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    serverExecutor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        url = "http://127.0.0.1:" + server.getLocalPort() + "/sns/jscode2session";
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+        serverExecutor.shutdownNow();
+        ((Logger) LoggerFactory.getLogger("org.apache.http")).setLevel(null);
+    }
+
+    @Test
+    void pooledClientReusesConnections() throws Exception {
+        // 预热两种方式，排除类加载的影响
+        for (int i = 0; i < 50; i++) {
+            HttpClientUtil.doGet(url, null);
+            getWithNewClient();
+        }
+
+        connections.clear();
+        long[] pooled = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            assertEquals(new String(BODY, StandardCharsets.UTF_8), HttpClientUtil.doGet(url, null));
+            pooled[i] = System.nanoTime() - start;
+        }
+        int pooledConnections = connections.size();
+
+        connections.clear();
+        long[] perRequest = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            assertEquals(new String(BODY, StandardCharsets.UTF_8), getWithNewClient());
+            perRequest[i] = System.nanoTime() - start;
+        }
+        int perRequestConnections = connections.size();
+
+        log.info("{}次顺序请求：连接池建立{}个连接，p50={}us p99={}us；每次新建客户端建立{}个连接，p50={}us p99={}us",
+                REQUESTS, pooledConnections, percentile(pooled, 50), percentile(pooled, 99),
+                perRequestConnections, percentile(perRequest, 50), percentile(perRequest, 99));
+
+        // 顺序请求时连接池一直复用同一个连接，新建客户端每次都要重新建立连接
+        assertEquals(1, pooledConnections);
+        assertEquals(REQUESTS, perRequestConnections);
+    }
+
+    @Test
+    void concurrentRequestsReuseConnectionsFromPool() throws Exception {
+        connections.clear();
+        ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                futures.add(callers.submit(() -> HttpClientUtil.doGet(url, null)));
+            }
+            for (Future<String> future : futures) {
+                assertEquals(new String(BODY, StandardCharsets.UTF_8), future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // 同时在途的请求不超过调用线程数，连接用完归还后被后续请求复用
+        assertTrue(connections.size() <= THREADS, "连接数" + connections.size());
+    }
+
+    /**
+     * 处理一个连接上的请求，直到客户端关闭连接
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII))) {
+            s.setTcpNoDelay(true);
+            OutputStream out = s.getOutputStream();
+            byte[] header = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + BODY.length
+                    + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            byte[] response = Arrays.copyOf(header, header.length + BODY.length);
+            System.arraycopy(BODY, 0, response, header.length, BODY.length);
+            String line;
+            while ((line = in.readLine()) != null) {
+                // GET请求没有请求体，读到空行即为一个完整的请求
+                if (line.isEmpty()) {
+                    connections.add(s.getPort());
+                    out.write(response);
+                    out.flush();
+                }
+            }
+        } catch (IOException ignored) {
+            // 客户端关闭连接
+        }
+    }
+
+    /**
+     * 改造前HttpClientUtil.doGet的实现：每次请求新建客户端，用完关闭
+     */
+    private String getWithNewClient() throws Exception {
+        try (CloseableHttpClient httpClient = HttpClients.createDefault();
+             CloseableHttpResponse response = httpClient.execute(new HttpGet(url))) {
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        }
+    }
+
+    private static long percentile(long[] nanos, int percent) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[(sorted.length - 1) * percent / 100]);
+    }
+}
@@ -0,0 +1,87 @@
+package com.sky.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单号生成基准测试：CAS实现的SnowflakeIdGenerator vs 常见的synchronized实现，单线程和8线程
+ * 每毫秒最多4096个id，吞吐量超过4096/ms后两种实现都会借用后面的时间戳，测的是生成本身的开销
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main SnowflakeIdGeneratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private static final long EPOCH = 1704038400000L;
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, EPOCH);
+
+    private final SynchronizedGenerator synchronizedGenerator = new SynchronizedGenerator();
+
+    @Benchmark
+    @Threads(1)
+    public long casSingleThread() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long casEightThreads() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long synchronizedSingleThread() {
+        return synchronizedGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long synchronizedEightThreads() {
+        return synchronizedGenerator.nextId();
+    }
+
+    /**
+     * 对照：加锁更新时间戳和序列号，时钟回拨或序列号用完时同样沿用上一个时间戳
+     */
+    static class SynchronizedGenerator {
+
+        private long lastTimestamp;
+
+        private long sequence;
+
+        synchronized long nextId() {
+            long now = System.currentTimeMillis() - EPOCH;
+            if (now > lastTimestamp) {
+                lastTimestamp = now;
+                sequence = 0;
+            } else if (++sequence > 4095) {
+                lastTimestamp++;
+                sequence = 0;
+            }
+            return (lastTimestamp << 22) | (1L << 12) | sequence;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SnowflakeIdGeneratorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WeChatProperties;
+import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付回调解密基准测试：每次新建AesUtil并用JSONObject取值（改造前） vs WeChatPayNotifyDecryptor
+ * 结果为每秒可解密的回调数
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main WeChatPayNotifyDecryptorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeChatPayNotifyDecryptorBenchmark {
+
+    private String body;
+
+    private WeChatPayNotifyDecryptor decryptor;
+
+    @Setup
+    public void setUp() {
+        body = WeChatPayNotifySamples.paySuccess("1715000000000", "4200002100000000");
+        WeChatProperties weChatProperties = new WeChatProperties();
+        weChatProperties.setApiV3Key(WeChatPayNotifySamples.API_V3_KEY);
+        decryptor = new WeChatPayNotifyDecryptor();
+        ReflectionTestUtils.setField(decryptor, "weChatProperties", weChatProperties);
+    }
+
+    /**
+     * 改造前PayNotifyController中的实现
+     */
+    @Benchmark
+    public String aesUtil() throws Exception {
+        JSONObject resultObject = JSON.parseObject(body);
+        JSONObject resource = resultObject.getJSONObject("resource");
+        AesUtil aesUtil = new AesUtil(WeChatPayNotifySamples.API_V3_KEY.getBytes(StandardCharsets.UTF_8));
+        String plainText = aesUtil.decryptToString(resource.getString("associated_data").getBytes(StandardCharsets.UTF_8),
+                resource.getString("nonce").getBytes(StandardCharsets.UTF_8),
+                resource.getString("ciphertext"));
+        return JSON.parseObject(plainText).getString("out_trade_no");
+    }
+
+    @Benchmark
+    public String decryptor() throws Exception {
+        return decryptor.decryptTransaction(body).getOutTradeNo();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WeChatPayNotifyDecryptorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
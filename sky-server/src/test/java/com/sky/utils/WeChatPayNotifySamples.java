@@ -0,0 +1,66 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 按微信支付APIv3的格式构造加密的支付成功回调报文，用于测试和基准测试
+ */
+public class WeChatPayNotifySamples {
+
+    public static final String API_V3_KEY = "CZBK5I236435wxpay435434323EFDuv3";
+
+    private static final String ASSOCIATED_DATA = "transaction";
+
+    /**
+     * 构造支付成功回调报文
+     * @param outTradeNo 商户平台订单号
+     * @param transactionId 微信支付交易号
+     * @return 回调请求体
+     */
+    public static String paySuccess(String outTradeNo, String transactionId) {
+        JSONObject transaction = new JSONObject(true);
+        transaction.put("mchid", "1561414331");
+        transaction.put("appid", "wx4360a655d0fbae7e");
+        transaction.put("out_trade_no", outTradeNo);
+        transaction.put("transaction_id", transactionId);
+        transaction.put("trade_type", "JSAPI");
+        transaction.put("trade_state", "SUCCESS");
+        transaction.put("trade_state_desc", "支付成功");
+        transaction.put("success_time", "2024-05-01T12:00:00+08:00");
+
+        // 微信的nonce是12位随机字符串
+        String nonce = String.format("%012d", Math.abs(outTradeNo.hashCode()) % 1_000_000_000_000L);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(API_V3_KEY.getBytes(StandardCharsets.UTF_8), "AES"),
+                    new GCMParameterSpec(128, nonce.getBytes(StandardCharsets.UTF_8)));
+            cipher.updateAAD(ASSOCIATED_DATA.getBytes(StandardCharsets.UTF_8));
+            byte[] ciphertext = cipher.doFinal(transaction.toJSONString().getBytes(StandardCharsets.UTF_8));
+
+            JSONObject resource = new JSONObject(true);
+            resource.put("original_type", "transaction");
+            resource.put("algorithm", "AEAD_AES_256_GCM");
+            resource.put("ciphertext", Base64.getEncoder().encodeToString(ciphertext));
+            resource.put("associated_data", ASSOCIATED_DATA);
+            resource.put("nonce", nonce);
+
+            JSONObject notification = new JSONObject(true);
+            notification.put("id", "EV-" + transactionId);
+            notification.put("create_time", "2024-05-01T12:00:01+08:00");
+            notification.put("resource_type", "encrypt-resource");
+            notification.put("event_type", "TRANSACTION.SUCCESS");
+            notification.put("summary", "支付成功");
+            notification.put("resource", resource);
+            return JSON.toJSONString(notification);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import com.sky.websocket.event.NewOrderEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 两个合并器模拟两个节点，共用同一个redis窗口
+ */
+class NewOrderCoalescerTest {
+
+    private static final long WINDOW = 100;
+
+    private final WebSocketProperties webSocketProperties = new WebSocketProperties();
+
+    private final WebSocketPushBus pushBus = mock(WebSocketPushBus.class);
+
+    private final List<NewOrderCoalescer> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        webSocketProperties.setNewOrderCoalesceWindow(WINDOW);
+        new AdminWebSocket().setPushBus(pushBus);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(NewOrderCoalescer::destroy);
+        new AdminWebSocket().setPushBus(null);
+    }
+
+    @Test
+    void ordersFromAllNodesWithinOneWindowArePushedAsOneBatch() {
+        FakeWindowRedis redis = new FakeWindowRedis();
+        NewOrderCoalescer nodeA = node(redis);
+        NewOrderCoalescer nodeB = node(redis);
+
+        for (long i = 1; i <= 5; i++) {
+            (i % 2 == 0 ? nodeB : nodeA).add(order(i));
+        }
+
+        ArgumentCaptor<String> text = ArgumentCaptor.forClass(String.class);
+        verify(pushBus, timeout(2000)).publish(eq(WebSocketPushBus.TARGET_ADMIN), isNull(), text.capture());
+        // 窗口到期后只推送一次，两个节点不会各推一批
+        verify(pushBus, after(3 * WINDOW).times(1)).publish(anyString(), isNull(), anyString());
+        assertTrue(text.getValue().contains("\"type\":\"" + WebSocketMessage.TYPE_NEW_ORDER_BATCH + "\""), text.getValue());
+        assertTrue(text.getValue().contains("\"count\":5"), text.getValue());
+    }
+
+    @Test
+    void nextWindowOpensAfterFlush() {
+        FakeWindowRedis redis = new FakeWindowRedis();
+        NewOrderCoalescer nodeA = node(redis);
+        NewOrderCoalescer nodeB = node(redis);
+
+        nodeA.add(order(1L));
+        verify(pushBus, timeout(2000)).publish(anyString(), isNull(), anyString());
+        nodeB.add(order(2L));
+
+        // 第二个窗口只有一个订单，按单条来单提醒推送
+        ArgumentCaptor<String> text = ArgumentCaptor.forClass(String.class);
+        verify(pushBus, timeout(2000).times(2)).publish(anyString(), isNull(), text.capture());
+        assertTrue(text.getValue().contains("\"type\":\"" + WebSocketMessage.TYPE_NEW_ORDER + "\""), text.getValue());
+    }
+
+    @Test
+    void ordersArePushedImmediatelyWhenRedisIsDown() {
+        FakeWindowRedis redis = new FakeWindowRedis();
+        redis.down = true;
+
+        node(redis).add(order(1L));
+
+        verify(pushBus, times(1)).publish(eq(WebSocketPushBus.TARGET_ADMIN), isNull(), anyString());
+    }
+
+    private NewOrderCoalescer node(StringRedisTemplate redis) {
+        NewOrderCoalescer coalescer = new NewOrderCoalescer(webSocketProperties, redis, new SimpleMeterRegistry());
+        nodes.add(coalescer);
+        return coalescer;
+    }
+
+    private static NewOrderEvent order(Long id) {
+        return NewOrderEvent.builder()
+                .orderId(id)
+                .orderNumber(String.valueOf(1000 + id))
+                .amount(new BigDecimal("28.50"))
+                .build();
+    }
+
+    /**
+     * 在内存中执行合并窗口的两个脚本
+     */
+    private static class FakeWindowRedis extends StringRedisTemplate {
+
+        private final List<String> window = new ArrayList<>();
+
+        private boolean locked;
+
+        private volatile boolean down;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            if (down) {
+                throw new RedisConnectionFailureException("redis down");
+            }
+            if (script == NewOrderCoalescer.ADD_SCRIPT) {
+                window.add((String) args[0]);
+                if (locked) {
+                    return (T) Long.valueOf(0);
+                }
+                locked = true;
+                return (T) Long.valueOf(1);
+            }
+            List<String> orders = new ArrayList<>(window);
+            window.clear();
+            locked = false;
+            return (T) orders;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.websocket.event.NewOrderEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 来单提醒消息编码基准测试：HashMap载荷+默认序列化配置（改造前） vs 事件类+WebSocketCodec
+ * 每次调用都构造载荷再编码，和推送时的路径一致；main方法带GC profiler，输出每次编码的分配字节数（gc.alloc.rate.norm）
+ * 运行：在IDE中执行main方法，或 java -cp <测试classpath> org.openjdk.jmh.Main WebSocketCodecBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketCodecBenchmark {
+
+    private Long orderId;
+    private String orderNumber;
+    private BigDecimal amount;
+    private String consignee;
+    private String phone;
+    private String address;
+    private LocalDateTime orderTime;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        orderId = 1024L;
+        orderNumber = "1715000000000123456";
+        amount = new BigDecimal("58.50");
+        consignee = "张三";
+        phone = "13800000000";
+        address = "北京市海淀区中关村大街1号";
+        orderTime = LocalDateTime.of(2024, 5, 1, 12, 30, 15);
+        timestamp = System.currentTimeMillis();
+
+        // 两种编码的JSON内容必须一致，比较的才是同一条消息
+        if (!JSON.parseObject(hashMap()).equals(JSON.parseObject(codec()))) {
+            throw new IllegalStateException("编码结果不一致：" + hashMap() + " / " + codec());
+        }
+    }
+
+    /**
+     * 改造前AdminWebSocket.sendNewOrder中的实现
+     */
+    @Benchmark
+    public String hashMap() {
+        Map<String, Object> merchantData = new HashMap<>();
+        merchantData.put("orderId", orderId);
+        merchantData.put("orderNumber", orderNumber);
+        merchantData.put("amount", amount);
+        merchantData.put("consignee", consignee);
+        merchantData.put("phone", phone);
+        merchantData.put("address", address);
+        merchantData.put("orderTime", orderTime);
+        WebSocketMessage message = WebSocketMessage.builder()
+                .type(WebSocketMessage.TYPE_NEW_ORDER)
+                .data(merchantData)
+                .timestamp(timestamp)
+                .message("您有新的订单")
+                .build();
+        return JSON.toJSONString(message);
+    }
+
+    @Benchmark
+    public String codec() {
+        NewOrderEvent event = NewOrderEvent.builder()
+                .orderId(orderId)
+                .orderNumber(orderNumber)
+                .amount(amount)
+                .consignee(consignee)
+                .phone(phone)
+                .address(address)
+                .orderTime(orderTime)
+                .build();
+        WebSocketMessage message = WebSocketMessage.builder()
+                .type(WebSocketMessage.TYPE_NEW_ORDER)
+                .data(event)
+                .timestamp(timestamp)
+                .message("您有新的订单")
+                .build();
+        return WebSocketCodec.encode(message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WebSocketCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,144 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 心跳长时间运行测试：5万个空闲连接反复检查，内存保持稳定，超时后全部关闭并移除
+ * 连接用动态代理模拟，只保留心跳用到的状态，避免5万个mock本身占用大量内存
+ */
+@Slf4j
+class WebSocketHeartbeatSoakTest {
+
+    private static final int SESSIONS = 50_000;
+
+    private static final int ROUNDS = 30;
+
+    private WebSocketProperties properties;
+
+    private WebSocketHeartbeat heartbeat;
+
+    private WebSocketSessionRegistry registry;
+
+    private final AtomicInteger pings = new AtomicInteger();
+
+    private final AtomicInteger closes = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        heartbeat = new WebSocketHeartbeat(properties, new SimpleMeterRegistry());
+        registry = new WebSocketSessionRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeat.destroy();
+    }
+
+    @Test
+    void idleSessionsKeepMemoryStable() throws Exception {
+        RemoteEndpoint.Async async = (RemoteEndpoint.Async) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.Async.class}, (proxy, method, args) -> {
+                    if ("sendPing".equals(method.getName())) {
+                        pings.incrementAndGet();
+                    }
+                    return null;
+                });
+        for (int i = 0; i < SESSIONS; i++) {
+            Session session = session(String.valueOf(i), async);
+            WebSocketHeartbeat.touch(session);
+            registry.add((long) i, session);
+        }
+
+        // 第一轮创建每个连接的心跳状态，之后的内存不应再随检查次数增长
+        long now = System.currentTimeMillis();
+        sweep(now);
+        long baseline = usedHeap();
+        for (int round = 1; round < ROUNDS; round++) {
+            sweep(now);
+        }
+        long after = usedHeap();
+        log.info("{}个空闲连接检查{}轮：ping {}次，第一轮后堆占用{}MB，{}轮后{}MB", SESSIONS, ROUNDS, pings.get(),
+                baseline >> 20, ROUNDS, after >> 20);
+
+        assertEquals(SESSIONS, registry.sessionCount());
+        assertEquals(0, closes.get());
+        assertEquals((long) SESSIONS * ROUNDS, pings.get());
+        assertTrue(after - baseline < 8L << 20, "堆占用增长" + ((after - baseline) >> 20) + "MB");
+
+        // 超过空闲超时时间，全部关闭并移除
+        sweep(now + properties.getIdleTimeout() + 1);
+        assertEquals(0, registry.sessionCount());
+        assertEquals(SESSIONS, closes.get());
+    }
+
+    /**
+     * 检查一轮并等待ping线程池执行完
+     */
+    private void sweep(long now) throws InterruptedException {
+        heartbeat.check(registry, now, new int[2]);
+        ThreadPoolExecutor pingExecutor = (ThreadPoolExecutor) ReflectionTestUtils.getField(heartbeat, "pingExecutor");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (pingExecutor.getCompletedTaskCount() < pingExecutor.getTaskCount()) {
+            assertTrue(System.nanoTime() < deadline, "ping线程池未执行完");
+            Thread.sleep(5);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Session session(String id, RemoteEndpoint.Async async) {
+        Map<String, Object> userProperties = new ConcurrentHashMap<>();
+        AtomicBoolean open = new AtomicBoolean(true);
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId":
+                            return id;
+                        case "getUserProperties":
+                            return userProperties;
+                        case "isOpen":
+                            return open.get();
+                        case "getAsyncRemote":
+                            return async;
+                        case "close":
+                            if (open.compareAndSet(true, false)) {
+                                closes.incrementAndGet();
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
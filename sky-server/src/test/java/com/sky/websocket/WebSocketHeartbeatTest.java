@@ -0,0 +1,110 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketHeartbeatTest {
+
+    private WebSocketHeartbeat heartbeat;
+
+    private WebSocketSessionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setPingPoolSize(2);
+        heartbeat = new WebSocketHeartbeat(properties, new SimpleMeterRegistry());
+        registry = new WebSocketSessionRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeat.destroy();
+    }
+
+    @Test
+    void blockedPingDoesNotStallSweep() throws Exception {
+        // 模拟对端失联：sendPing一直阻塞
+        CountDownLatch release = new CountDownLatch(1);
+        RemoteEndpoint.Async blocked = mock(RemoteEndpoint.Async.class);
+        doAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(blocked).sendPing(any(ByteBuffer.class));
+        Session dead = session(blocked);
+        registry.add(1L, dead);
+        RemoteEndpoint.Async healthy = mock(RemoteEndpoint.Async.class);
+        Session alive = session(healthy);
+        registry.add(2L, alive);
+
+        try {
+            long start = System.nanoTime();
+            heartbeat.check(registry, System.currentTimeMillis(), new int[2]);
+            heartbeat.check(registry, System.currentTimeMillis(), new int[2]);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+            verify(healthy, timeout(1000).atLeastOnce()).sendPing(any(ByteBuffer.class));
+            // 上一个ping没完成，不会再排队第二个
+            verify(blocked, timeout(1000).times(1)).sendPing(any(ByteBuffer.class));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void failedPingClosesSession() throws Exception {
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doThrow(new IOException("timeout")).when(async).sendPing(any(ByteBuffer.class));
+        Session session = session(async);
+        registry.add(1L, session);
+
+        heartbeat.check(registry, System.currentTimeMillis(), new int[2]);
+
+        verify(session, timeout(1000)).close(any(CloseReason.class));
+        assertTrue(session.getUserProperties().containsKey("org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT"));
+    }
+
+    @Test
+    void healthyPingKeepsSessionOpen() throws Exception {
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        Session session = session(async);
+        registry.add(1L, session);
+
+        heartbeat.check(registry, System.currentTimeMillis(), new int[2]);
+
+        verify(async, timeout(1000)).sendPing(any(ByteBuffer.class));
+        verify(session, never()).close(any(CloseReason.class));
+    }
+
+    private Session session(RemoteEndpoint.Async async) {
+        Session session = mock(Session.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn(String.valueOf(System.identityHashCode(session)));
+        when(session.getUserProperties()).thenReturn(new HashMap<>());
+        when(session.getAsyncRemote()).thenReturn(async);
+        WebSocketHeartbeat.touch(session);
+        return session;
+    }
+}
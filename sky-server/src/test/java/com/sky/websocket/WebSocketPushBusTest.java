@@ -0,0 +1,116 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebSocketPushBusTest {
+
+    private static final int USERS = 8;
+
+    private static final int MESSAGES = 200;
+
+    private final Map<Long, List<Integer>> delivered = new ConcurrentHashMap<>();
+
+    private CountDownLatch done;
+
+    private WebSocketPushBus pushBus;
+
+    @BeforeEach
+    void setUp() {
+        done = new CountDownLatch(USERS * MESSAGES);
+        // 推送耗时随机，线程池并发推送时后到的消息可能先推送出去
+        pushBus = new WebSocketPushBus() {
+            @Override
+            void deliver(PushMessage message) {
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(20_000));
+                delivered.computeIfAbsent(message.getId(), k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(Integer.valueOf(message.getText()));
+                done.countDown();
+            }
+        };
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setPushDeliverThreads(3);
+        ReflectionTestUtils.setField(pushBus, "webSocketProperties", properties);
+        pushBus.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pushBus.destroy();
+    }
+
+    @Test
+    void messagesForOneUserAreDeliveredInPublishOrder() throws Exception {
+        // 每次广播包含所有用户的一条消息，依次收到MESSAGES次广播
+        for (int seq = 0; seq < MESSAGES; seq++) {
+            List<WebSocketPushBus.PushMessage> batch = new ArrayList<>();
+            for (long userId = 1; userId <= USERS; userId++) {
+                batch.add(new WebSocketPushBus.PushMessage(WebSocketPushBus.TARGET_USER, userId, String.valueOf(seq)));
+            }
+            pushBus.onMessage(new DefaultMessage(WebSocketPushBus.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    JSON.toJSONString(batch).getBytes(StandardCharsets.UTF_8)), null);
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        for (long userId = 1; userId <= USERS; userId++) {
+            List<Integer> received = delivered.get(userId);
+            assertEquals(MESSAGES, received.size());
+            for (int seq = 0; seq < MESSAGES; seq++) {
+                assertEquals(seq, received.get(seq).intValue(), "用户" + userId);
+            }
+        }
+    }
+
+    @Test
+    void slowDeliveryDoesNotBlockSubscriptionThread() {
+        CountDownLatch blocked = new CountDownLatch(1);
+        WebSocketPushBus slowBus = new WebSocketPushBus() {
+            @Override
+            void deliver(PushMessage message) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setPushDeliverThreads(1);
+        properties.setPushDeliverQueueSize(10);
+        ReflectionTestUtils.setField(slowBus, "webSocketProperties", properties);
+        slowBus.init();
+        try {
+            List<WebSocketPushBus.PushMessage> batch = new ArrayList<>();
+            for (long userId = 1; userId <= 100; userId++) {
+                batch.add(new WebSocketPushBus.PushMessage(WebSocketPushBus.TARGET_USER, userId, "x"));
+            }
+            long start = System.nanoTime();
+            // 推送线程被卡住、队列已满时，订阅线程丢弃多余的消息后立即返回
+            slowBus.onMessage(new DefaultMessage(WebSocketPushBus.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    JSON.toJSONString(batch).getBytes(StandardCharsets.UTF_8)), null);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        } finally {
+            blocked.countDown();
+            slowBus.destroy();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WebSocketSenderTest {
+
+    private final List<String> sent = new ArrayList<>();
+
+    private SendHandler pending;
+
+    private Session session;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private WebSocketSender sender;
+
+    @BeforeEach
+    void setUp() {
+        // 模拟tomcat：前一个异步发送未完成时再次发送抛出IllegalStateException
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        doAnswer(invocation -> {
+            if (pending != null) {
+                throw new IllegalStateException("The remote endpoint was in state [TEXT_FULL_WRITING]");
+            }
+            sent.add(invocation.getArgument(0));
+            pending = invocation.getArgument(1);
+            return null;
+        }).when(async).sendText(anyString(), any(SendHandler.class));
+
+        Map<String, Object> userProperties = new HashMap<>();
+        session = mock(Session.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("1");
+        when(session.getUserProperties()).thenReturn(userProperties);
+        when(session.getAsyncRemote()).thenReturn(async);
+
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setSendQueueSize(3);
+        meterRegistry = new SimpleMeterRegistry();
+        sender = new WebSocketSender(properties, meterRegistry);
+    }
+
+    @Test
+    void sendsOneMessageAtATimeInOrder() {
+        assertTrue(sender.send(session, "a"));
+        assertTrue(sender.send(session, "b"));
+        assertTrue(sender.send(session, "c"));
+        assertEquals(1, sent.size());
+
+        complete();
+        complete();
+        complete();
+
+        assertEquals(3, sent.size());
+        assertEquals("a", sent.get(0));
+        assertEquals("b", sent.get(1));
+        assertEquals("c", sent.get(2));
+        assertEquals(0, dropped());
+    }
+
+    @Test
+    void dropsWhenQueueIsFull() {
+        for (int i = 0; i < 5; i++) {
+            sender.send(session, String.valueOf(i));
+        }
+        assertEquals(2, dropped());
+        assertFalse(sender.send(session, "x"));
+
+        // 队列腾出位置后可以继续发送
+        complete();
+        assertTrue(sender.send(session, "y"));
+        complete();
+        complete();
+        complete();
+        assertEquals("y", sent.get(sent.size() - 1));
+    }
+
+    @Test
+    void failedSendContinuesWithNextMessage() {
+        sender.send(session, "a");
+        sender.send(session, "b");
+        SendHandler handler = pending;
+        pending = null;
+        handler.onResult(new SendResult(new java.io.IOException("broken pipe")));
+
+        assertEquals(2, sent.size());
+        assertEquals(1, dropped());
+    }
+
+    private void complete() {
+        SendHandler handler = pending;
+        pending = null;
+        handler.onResult(new SendResult());
+    }
+
+    private double dropped() {
+        return meterRegistry.counter("sky.websocket.dropped").count();
+    }
+}
@@ -0,0 +1,72 @@
+package com.sky.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class WebSocketSessionRegistryTest {
+
+    @Test
+    void addRacingWithRemoveOfLastSessionIsNotLost() throws Exception {
+        WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+        Session closing = mock(Session.class);
+        registry.add(1L, closing);
+
+        // 新连接加入集合时（计算hashCode）等待旧连接移除，复现"加入到刚被移除的空集合"的时序；
+        // 加入和移除互斥时移除会等加入完成，这里最多等待500毫秒
+        CountDownLatch adding = new CountDownLatch(1);
+        CountDownLatch removed = new CountDownLatch(1);
+        Session opening = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            adding.countDown();
+                            removed.await(500, TimeUnit.MILLISECONDS);
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+
+        CompletableFuture<Void> add = CompletableFuture.runAsync(() -> registry.add(1L, opening));
+        CompletableFuture<Void> remove = CompletableFuture.runAsync(() -> {
+            try {
+                adding.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            registry.remove(1L, closing);
+            removed.countDown();
+        });
+        add.get(5, TimeUnit.SECONDS);
+        remove.get(5, TimeUnit.SECONDS);
+
+        assertTrue(registry.get(1L).contains(opening), "新连接丢失");
+        assertEquals(1, registry.sessionCount());
+    }
+
+    @Test
+    void removingLastSessionUnmapsId() {
+        WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+        Session first = mock(Session.class);
+        Session second = mock(Session.class);
+        registry.add(1L, first);
+        registry.add(1L, second);
+
+        registry.remove(1L, first);
+        assertEquals(1, registry.size());
+        registry.remove(1L, second);
+        assertEquals(0, registry.size());
+        assertTrue(registry.get(1L).isEmpty());
+    }
+}